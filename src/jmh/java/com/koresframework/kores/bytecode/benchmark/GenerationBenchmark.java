@@ -0,0 +1,159 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.benchmark;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.post.Processor;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.bytecode.util.ConstsKt;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.util.CheckClassAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of each generation stage over {@link Workloads}:
+ *
+ * <ul>
+ *     <li>{@link #pipeline()}: Generation with default options (generation, post-processing and check).</li>
+ *     <li>{@link #generation()}: Generation without post-processing and check.</li>
+ *     <li>{@link #generationAndPostProcessing()}: Generation with fused post-processing, without check.</li>
+ *     <li>{@link #postProcessing()}: Standalone post-processing of generated classes.</li>
+ *     <li>{@link #check(Blackhole)}: {@link CheckClassAdapter} verification of generated classes.</li>
+ *     <li>{@link #define()}: Definition of generated classes in a new class loader.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GenerationBenchmark {
+
+    @Param
+    public Workloads workload;
+
+    private List<TypeDeclaration> declarations;
+    private BytecodeGenerator pipelineGenerator;
+    private BytecodeGenerator generationGenerator;
+    private BytecodeGenerator fusedGenerator;
+    private Processor processor;
+    private List<BytecodeClass> unprocessed;
+    private List<BytecodeClass> processed;
+
+    @Setup
+    public void setup() {
+        this.declarations = this.workload.create();
+
+        this.pipelineGenerator = generator();
+
+        this.generationGenerator = generator();
+        this.generationGenerator.getOptions().set(BytecodeOptions.POST_PROCESSING, false);
+        this.generationGenerator.getOptions().set(BytecodeOptions.CHECK, false);
+
+        this.fusedGenerator = generator();
+        this.fusedGenerator.getOptions().set(BytecodeOptions.CHECK, false);
+
+        this.processor = new Processor(ConstsKt.ASM_API,
+                this.pipelineGenerator.getOptions().get(BytecodeOptions.POST_PROCESSORS),
+                this.pipelineGenerator.getOptions().get(BytecodeOptions.POST_PROCESSING_LOOPS));
+
+        this.unprocessed = generate(this.generationGenerator, this.declarations);
+        this.processed = generate(this.pipelineGenerator, this.declarations);
+    }
+
+    @Benchmark
+    public List<BytecodeClass> pipeline() {
+        return generate(this.pipelineGenerator, this.declarations);
+    }
+
+    @Benchmark
+    public List<BytecodeClass> generation() {
+        return generate(this.generationGenerator, this.declarations);
+    }
+
+    @Benchmark
+    public List<BytecodeClass> generationAndPostProcessing() {
+        return generate(this.fusedGenerator, this.declarations);
+    }
+
+    @Benchmark
+    public List<byte[]> postProcessing() {
+        List<byte[]> result = new ArrayList<>(this.unprocessed.size());
+
+        for (BytecodeClass bytecodeClass : this.unprocessed) {
+            result.add(this.processor.process(bytecodeClass.getBytecode()));
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public void check(Blackhole blackhole) {
+        for (BytecodeClass bytecodeClass : this.processed) {
+            ClassNode node = new ClassNode();
+            new ClassReader(bytecodeClass.getBytecode()).accept(new CheckClassAdapter(node, true), 0);
+            blackhole.consume(node);
+        }
+    }
+
+    @Benchmark
+    public Class<?> define() {
+        return new CodeClassLoader().define(this.processed);
+    }
+
+    private static BytecodeGenerator generator() {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.GENERATE_BRIDGE_METHODS, true);
+        return generator;
+    }
+
+    private static List<BytecodeClass> generate(BytecodeGenerator generator, List<TypeDeclaration> declarations) {
+        List<BytecodeClass> classes = new ArrayList<>();
+
+        for (TypeDeclaration declaration : declarations) {
+            classes.addAll(generator.process(declaration));
+        }
+
+        return classes;
+    }
+}
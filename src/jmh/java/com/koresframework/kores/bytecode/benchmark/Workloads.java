@@ -0,0 +1,318 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.benchmark;
+
+import com.koresframework.kores.Instruction;
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.Types;
+import com.koresframework.kores.base.Access;
+import com.koresframework.kores.base.Alias;
+import com.koresframework.kores.base.CatchStatement;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.FieldDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.factory.VariableFactory;
+import com.koresframework.kores.helper.ConcatHelper;
+import com.koresframework.kores.helper.Predefined;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.operator.Operators;
+import com.koresframework.kores.test.ComplexInnerClassTest_;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.LocalClassTest_;
+import com.koresframework.kores.type.Generic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Representative declarations generated by benchmarks.
+ */
+public enum Workloads {
+    /**
+     * Class with thousands of fields and methods.
+     */
+    WIDE_CLASS {
+        @Override
+        public List<TypeDeclaration> create() {
+            return Collections.singletonList(wideClass(2000));
+        }
+    },
+
+    /**
+     * Inner, anonymous and local classes.
+     */
+    INNER_CLASSES {
+        @Override
+        public List<TypeDeclaration> create() {
+            List<TypeDeclaration> declarations = new ArrayList<>();
+            declarations.add(InnerClassTest_.$());
+            declarations.add(ComplexInnerClassTest_.$());
+            declarations.add(LocalClassTest_.$());
+            return declarations;
+        }
+    },
+
+    /**
+     * Switch statements with hundreds of int and string cases.
+     */
+    LARGE_SWITCH {
+        @Override
+        public List<TypeDeclaration> create() {
+            return Collections.singletonList(largeSwitch(500));
+        }
+    },
+
+    /**
+     * Concatenations with hundreds of operands.
+     */
+    HEAVY_CONCAT {
+        @Override
+        public List<TypeDeclaration> create() {
+            return Collections.singletonList(heavyConcat(100, 150));
+        }
+    },
+
+    /**
+     * Deeply nested try-catch-finally statements, finally blocks are inlined in every exit.
+     */
+    TRY_FINALLY {
+        @Override
+        public List<TypeDeclaration> create() {
+            return Collections.singletonList(tryFinally(8));
+        }
+    },
+
+    /**
+     * Class implementing generic interfaces, requires bridge methods.
+     */
+    BRIDGES {
+        @Override
+        public List<TypeDeclaration> create() {
+            return Collections.singletonList(bridges());
+        }
+    };
+
+    /**
+     * Creates declarations of this workload.
+     */
+    public abstract List<TypeDeclaration> create();
+
+    static TypeDeclaration wideClass(int members) {
+        List<FieldDeclaration> fields = new ArrayList<>();
+        List<MethodDeclaration> methods = new ArrayList<>();
+
+        for (int i = 0; i < members; ++i) {
+            fields.add(FieldDeclaration.Builder.builder()
+                    .modifiers(KoresModifier.PRIVATE)
+                    .type(Types.INT)
+                    .name("field" + i)
+                    .value(Literals.INT(i))
+                    .build());
+
+            methods.add(MethodDeclaration.Builder.builder()
+                    .modifiers(KoresModifier.PUBLIC)
+                    .returnType(Types.INT)
+                    .name("method" + i)
+                    .body(Instructions.fromPart(Factories.returnValue(Types.INT,
+                            Factories.operate(
+                                    Factories.accessField(Alias.THIS.INSTANCE, Access.THIS, Types.INT, "field" + i),
+                                    Operators.ADD,
+                                    Literals.INT(i)
+                            ))))
+                    .build());
+        }
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName("com.benchmark.WideClass")
+                .fields(fields)
+                .methods(methods)
+                .build();
+    }
+
+    static TypeDeclaration largeSwitch(int cases) {
+        List<com.koresframework.kores.base.Case> intCases = new ArrayList<>();
+        List<com.koresframework.kores.base.Case> stringCases = new ArrayList<>();
+
+        for (int i = 0; i < cases; ++i) {
+            intCases.add(Factories.caseStatement(Literals.INT(i),
+                    Instructions.fromPart(Factories.returnValue(Types.STRING, Literals.STRING("int" + i)))));
+            stringCases.add(Factories.caseStatement(Literals.STRING("case" + i),
+                    Instructions.fromPart(Factories.returnValue(Types.INT, Literals.INT(i)))));
+        }
+
+        intCases.add(Factories.defaultCase(
+                Instructions.fromPart(Factories.returnValue(Types.STRING, Literals.STRING("default")))));
+        stringCases.add(Factories.defaultCase(
+                Instructions.fromPart(Factories.returnValue(Types.INT, Literals.INT(-1)))));
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName("com.benchmark.LargeSwitch")
+                .methods(
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                                .returnType(Types.STRING)
+                                .name("switchInt")
+                                .parameters(Factories.parameter(Types.INT, "value"))
+                                .body(Instructions.fromVarArgs(
+                                        Factories.switchInt(Factories.accessVariable(Types.INT, "value"), intCases)
+                                ))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                                .returnType(Types.INT)
+                                .name("switchString")
+                                .parameters(Factories.parameter(Types.STRING, "value"))
+                                .body(Instructions.fromVarArgs(
+                                        Factories.switchString(Factories.accessVariable(Types.STRING, "value"), stringCases)
+                                ))
+                                .build()
+                )
+                .build();
+    }
+
+    static TypeDeclaration heavyConcat(int methods, int operands) {
+        List<MethodDeclaration> methodDeclarations = new ArrayList<>();
+
+        for (int i = 0; i < methods; ++i) {
+            ConcatHelper concat = ConcatHelper.builder("concat" + i);
+
+            for (int j = 0; j < operands; ++j) {
+                if (j % 2 == 0)
+                    concat = concat.concat(Factories.accessVariable(Types.STRING, "value"));
+                else
+                    concat = concat.concat(":" + j);
+            }
+
+            methodDeclarations.add(MethodDeclaration.Builder.builder()
+                    .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                    .returnType(Types.STRING)
+                    .name("concat" + i)
+                    .parameters(Factories.parameter(Types.STRING, "value"))
+                    .body(Instructions.fromPart(Factories.returnValue(Types.STRING, concat.build())))
+                    .build());
+        }
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName("com.benchmark.HeavyConcat")
+                .methods(methodDeclarations)
+                .build();
+    }
+
+    static TypeDeclaration tryFinally(int depth) {
+        Instructions body = Instructions.fromPart(print("body"));
+
+        for (int i = 0; i < depth; ++i) {
+            CatchStatement catchStatement = Factories.catchStatement(
+                    Collections.singletonList(Types.EXCEPTION),
+                    VariableFactory.variable(Types.EXCEPTION, "ex" + i),
+                    Instructions.fromPart(print("catch" + i)));
+
+            body = Instructions.fromPart(Factories.tryStatement(
+                    body,
+                    Collections.singletonList(catchStatement),
+                    Instructions.fromPart(print("finally" + i))));
+        }
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName("com.benchmark.TryFinally")
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .returnType(Types.VOID)
+                        .name("tryFinally")
+                        .body(body)
+                        .build())
+                .build();
+    }
+
+    static TypeDeclaration bridges() {
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName("com.benchmark.Bridges")
+                .implementations(
+                        Generic.type(Comparable.class).of(Types.STRING),
+                        Generic.type(Function.class).of(Types.STRING, Types.STRING),
+                        Generic.type(Predicate.class).of(Types.STRING),
+                        Generic.type(Consumer.class).of(Types.STRING),
+                        Generic.type(Supplier.class).of(Types.STRING)
+                )
+                .methods(
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.INT)
+                                .name("compareTo")
+                                .parameters(Factories.parameter(Types.STRING, "value"))
+                                .body(Instructions.fromPart(Factories.returnValue(Types.INT, Literals.INT(0))))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.STRING)
+                                .name("apply")
+                                .parameters(Factories.parameter(Types.STRING, "value"))
+                                .body(Instructions.fromPart(Factories.returnValue(Types.STRING,
+                                        Factories.accessVariable(Types.STRING, "value"))))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.BOOLEAN)
+                                .name("test")
+                                .parameters(Factories.parameter(Types.STRING, "value"))
+                                .body(Instructions.fromPart(Factories.returnValue(Types.BOOLEAN, Literals.BOOLEAN(true))))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.VOID)
+                                .name("accept")
+                                .parameters(Factories.parameter(Types.STRING, "value"))
+                                .body(Instructions.fromPart(print("accept")))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.STRING)
+                                .name("get")
+                                .body(Instructions.fromPart(Factories.returnValue(Types.STRING, Literals.STRING("get"))))
+                                .build()
+                )
+                .build();
+    }
+
+    private static Instruction print(String str) {
+        return Predefined.invokePrintln(Literals.STRING(str));
+    }
+}
@@ -31,16 +31,74 @@ import com.github.jonathanxd.bytecodedisassembler.Disassembler
 import com.koresframework.kores.base.ModuleDeclaration
 import com.koresframework.kores.base.Named
 import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 /**
  * @property declaration Declaration that produced [bytecode]. Common types are [TypeDeclaration] and [ModuleDeclaration].
  */
-class BytecodeClass constructor(val declaration: Named, private val bytecode_: ByteArray) {
+class BytecodeClass private constructor(val declaration: Named, bytes: ByteArray?, private val buffer: ByteBuffer?) {
+
+    constructor(declaration: Named, bytecode: ByteArray) : this(declaration, bytecode, null)
+
+    /**
+     * Creates a bytecode class backed by [buffer] (such as a slice of a mapped file), which is only copied to an
+     * array when the array is needed. The content of [buffer] must never be modified.
+     */
+    internal constructor(declaration: Named, buffer: ByteBuffer) : this(declaration, null, buffer.slice())
+
+    private val bytecode_: ByteArray by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        bytes ?: ByteArray(this.buffer!!.remaining()).also { this.buffer.duplicate().get(it) }
+    }
 
     val disassembledCode: String by lazy {
-        Disassembler.disassemble(bytes = this.bytecode, appendHash = true)
+        Disassembler.disassemble(bytes = this.bytecode_, appendHash = true)
     }
 
+    /**
+     * Copy of generated bytecode. Prefer [asByteBuffer], [writeTo] or [defineWith] when the bytes are only read.
+     */
     val bytecode get() = bytecode_.clone()
 
+    /**
+     * Generated bytecode without a defensive copy, must never be modified.
+     */
+    internal val rawBytecode: ByteArray get() = bytecode_
+
+    /**
+     * Size of generated bytecode.
+     */
+    val size: Int get() = this.buffer?.remaining() ?: bytecode_.size
+
+    /**
+     * Read-only view of generated bytecode.
+     */
+    fun asByteBuffer(): ByteBuffer = (this.buffer ?: ByteBuffer.wrap(this.bytecode_)).asReadOnlyBuffer()
+
+    /**
+     * Writes generated bytecode to [out].
+     */
+    fun writeTo(out: OutputStream) {
+        out.write(this.bytecode_)
+    }
+
+    /**
+     * Writes generated bytecode to [channel].
+     */
+    fun writeTo(channel: WritableByteChannel) {
+        val buffer = this.asByteBuffer()
+
+        while (buffer.hasRemaining())
+            channel.write(buffer)
+    }
+
+    /**
+     * Defines this class in [loader].
+     *
+     * @see CodeClassLoader.define
+     */
+    fun defineWith(loader: CodeClassLoader): Class<*> = loader.define(this)
+
 }
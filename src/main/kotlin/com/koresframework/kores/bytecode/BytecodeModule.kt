@@ -29,13 +29,51 @@ package com.koresframework.kores.bytecode
 
 import com.github.jonathanxd.bytecodedisassembler.Disassembler
 import com.koresframework.kores.base.ModuleDeclaration
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 class BytecodeModule constructor(val module: ModuleDeclaration, private val bytecode_: ByteArray) {
 
     val disassembledCode: String by lazy {
-        Disassembler.disassemble(bytes = this.bytecode, appendHash = true)
+        Disassembler.disassemble(bytes = this.bytecode_, appendHash = true)
     }
 
+    /**
+     * Copy of generated bytecode. Prefer [asByteBuffer] or [writeTo] when the bytes are only read.
+     */
     val bytecode get() = bytecode_.clone()
 
+    /**
+     * Generated bytecode without a defensive copy, must never be modified.
+     */
+    internal val rawBytecode: ByteArray get() = bytecode_
+
+    /**
+     * Size of generated bytecode.
+     */
+    val size: Int get() = bytecode_.size
+
+    /**
+     * Read-only view of generated bytecode.
+     */
+    fun asByteBuffer(): ByteBuffer = ByteBuffer.wrap(this.bytecode_).asReadOnlyBuffer()
+
+    /**
+     * Writes generated bytecode to [out].
+     */
+    fun writeTo(out: OutputStream) {
+        out.write(this.bytecode_)
+    }
+
+    /**
+     * Writes generated bytecode to [channel].
+     */
+    fun writeTo(channel: WritableByteChannel) {
+        val buffer = this.asByteBuffer()
+
+        while (buffer.hasRemaining())
+            channel.write(buffer)
+    }
+
 }
\ No newline at end of file
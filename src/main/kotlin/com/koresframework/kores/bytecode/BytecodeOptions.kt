@@ -30,14 +30,23 @@
 package com.koresframework.kores.bytecode
 
 import com.koresframework.kores.base.Line
+import com.koresframework.kores.bytecode.post.ColdPathOutliner
 import com.koresframework.kores.bytecode.post.DeadCodeRemover
 import com.koresframework.kores.bytecode.post.GotoOptimizer
 import com.koresframework.kores.bytecode.post.MethodProcessor
+import com.koresframework.kores.bytecode.post.MethodSplitter
+import com.koresframework.kores.bytecode.post.OutlineReporter
 import com.koresframework.kores.bytecode.pre.GenLineVisitor
 import com.github.jonathanxd.iutils.option.Option
 import com.github.jonathanxd.iutils.option.Options
 import com.koresframework.kores.bytecode.doc.NestLogic
 import com.koresframework.kores.bytecode.doc.IndyConcatLogic
+import com.koresframework.kores.bytecode.util.ASM_API
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyResolver
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.util.concurrent.Executor
 
 /**
  * Calls [org.objectweb.asm.util.CheckClassAdapter] to check generated class.
@@ -58,7 +67,8 @@ val CHECK = Option(true)
 val POST_PROCESSING = Option(true)
 
 /**
- * How many times post-processors should run.
+ * Maximum number of times post-processors should run. Passes stop earlier when no
+ * [change tracking processor][com.koresframework.kores.bytecode.post.ChangeTrackingMethodProcessor] changes the method.
  */
 @JvmField
 val POST_PROCESSING_LOOPS = Option(1)
@@ -69,6 +79,33 @@ val POST_PROCESSING_LOOPS = Option(1)
 @JvmField
 val POST_PROCESSORS = Option<List<MethodProcessor>>(listOf(DeadCodeRemover, GotoOptimizer))
 
+/**
+ * Executor used to post-process methods of a class in parallel. When `null` (the default), methods are
+ * post-processed sequentially. [POST_PROCESSORS] must be thread-safe to be used with an executor.
+ *
+ * Generated classes do not depend on this option, methods are always kept in the declaration order.
+ */
+@JvmField
+val POST_PROCESSING_EXECUTOR = Option<Executor?>(null)
+
+/**
+ * Minimum amount of methods a class must have to be post-processed with [POST_PROCESSING_EXECUTOR]. Scheduling
+ * tasks costs more than processing small classes sequentially.
+ */
+@JvmField
+val POST_PROCESSING_PARALLEL_THRESHOLD = Option(64)
+
+/**
+ * Fuses [post-processing][POST_PROCESSING] into generation: classes are generated into a
+ * [ClassNode][org.objectweb.asm.tree.ClassNode], [POST_PROCESSORS] run over the tree and then the class is written
+ * (and frames are computed) only once. When disabled, classes are written, parsed again to be post-processed and
+ * written again.
+ *
+ * Has no effect when [POST_PROCESSING] is disabled.
+ */
+@JvmField
+val FUSED_PIPELINE = Option(true)
+
 /**
  * Calls MethodVisitor.visitLine for each expression
  */
@@ -251,6 +288,147 @@ enum class IndyConcatStrategy {
     LDC
 }
 
+/**
+ * Maximum size of a `finally` block to be inlined at every exit of its try statement (the end of the try block,
+ * the end of each catch block, the catch-all handler and each `return`, `break` and `continue`). Larger finally
+ * blocks are generated only once: exits store an index and jump to the finally block, which jumps back with
+ * a `tableswitch`.
+ *
+ * Size is the amount of statements of the finally block, including statements of nested bodies. Finally blocks are
+ * always inlined when a variable declared without a value is in scope, or when the return type of the method is
+ * unknown.
+ */
+@JvmField
+val FINALLY_INLINE_THRESHOLD = Option(16)
+
+/**
+ * Splits methods whose code is larger than [METHOD_SPLIT_THRESHOLD] into `private static synthetic` helper
+ * methods, so methods such as `<clinit>` of classes with many static field initializers do not exceed the
+ * JVM code size limit. Read more in [MethodSplitter].
+ *
+ * Methods are split in the tree, so when enabled, classes are generated into the tree even if the [FUSED_PIPELINE]
+ * is disabled. In that case only methods are split before writing, and [POST_PROCESSORS] still run over the
+ * written class.
+ */
+@JvmField
+val SPLIT_LARGE_METHODS = Option(true)
+
+/**
+ * Estimated code size in bytes above which methods are split when [SPLIT_LARGE_METHODS] is enabled.
+ */
+@JvmField
+val METHOD_SPLIT_THRESHOLD = Option(MethodSplitter.MAX_CODE_SIZE)
+
+/**
+ * Moves code which ends with a `throw` and code of exception handlers to `private static synthetic` helper
+ * methods, so the frequently executed code of methods fits in JIT inlining thresholds. Read more in
+ * [ColdPathOutliner].
+ *
+ * Has no effect when [POST_PROCESSING] is disabled.
+ */
+@JvmField
+val OUTLINE_COLD_PATHS = Option(false)
+
+/**
+ * Receives the estimated code size of methods before and after [OUTLINE_COLD_PATHS].
+ */
+@JvmField
+val COLD_PATH_REPORTER = Option<OutlineReporter?>(null)
+
+/**
+ * Resolver of class hierarchy information used to compute stack map frames, queried after the declarations
+ * being generated. The default resolver reads class files from the class path and only loads classes
+ * (without initializing them) as a last resort.
+ */
+@JvmField
+val TYPE_HIERARCHY_RESOLVER = Option(TypeHierarchyResolver.DEFAULT)
+
+/**
+ * Options which affect the generated bytecode.
+ */
+internal val BYTECODE_OUTPUT_OPTIONS: List<Option<*>> = listOf(
+    CHECK,
+    POST_PROCESSING,
+    POST_PROCESSING_LOOPS,
+    POST_PROCESSORS,
+    FUSED_PIPELINE,
+    VISIT_LINES,
+    VALIDATE_THIS,
+    VALIDATE_SUPER,
+    GENERATE_BRIDGE_METHODS,
+    GENERATE_SYNTHETIC_ACCESS,
+    FORCE_GENERATE_SYNTHETIC_ACCESS,
+    GENERATE_NESTS,
+    FORCE_GENERATE_NESTS,
+    INDIFY_STRING_CONCAT,
+    FORCE_INDIFY_STRING_CONCAT,
+    INDY_CONCAT_STRATEGY,
+    FINALLY_INLINE_THRESHOLD,
+    SPLIT_LARGE_METHODS,
+    METHOD_SPLIT_THRESHOLD,
+    OUTLINE_COLD_PATHS
+)
+
+/**
+ * All options declared in this file, used by [snapshot].
+ */
+internal val BYTECODE_OPTIONS: List<Option<*>> = BYTECODE_OUTPUT_OPTIONS + listOf(
+    TYPE_HIERARCHY_RESOLVER,
+    POST_PROCESSING_EXECUTOR,
+    POST_PROCESSING_PARALLEL_THRESHOLD,
+    COLD_PATH_REPORTER
+)
+
+/**
+ * Creates a copy of current values of this [Options], including options which are not
+ * [bytecode options][BYTECODE_OPTIONS] (such as options of third-party processors). Changes to this [Options]
+ * are not reflected in the returned snapshot.
+ */
+@Suppress("UNCHECKED_CAST")
+fun Options.snapshot(): Options {
+    val snapshot = Options()
+
+    this.entries().forEach { (option, value) ->
+        snapshot.set(option as Option<Any?>, value)
+    }
+
+    BYTECODE_OPTIONS.forEach {
+        val option = it as Option<Any?>
+        snapshot.set(option, this[option])
+    }
+
+    return snapshot
+}
+
+/**
+ * Every option set in this [Options]. [Options] does not expose its values, so they are read from its map.
+ */
+@Suppress("UNCHECKED_CAST")
+private fun Options.entries(): Map<Option<*>, Any?> {
+    val field = OPTIONS_MAP
+        ?: throw IllegalStateException("Cannot read values of Options '$this', the option map was not found.")
+
+    return HashMap(field.get(this) as Map<Option<*>, Any?>)
+}
+
+private val OPTIONS_MAP: Field? = Options::class.java.declaredFields
+    .firstOrNull { !Modifier.isStatic(it.modifiers) && Map::class.java.isAssignableFrom(it.type) }
+    ?.also { it.isAccessible = true }
+
+/**
+ * Whether post-processing is [fused][FUSED_PIPELINE] into generation.
+ */
+fun Options.isFusedPipeline() =
+    this[POST_PROCESSING] == true && this[FUSED_PIPELINE] == true
+
+/**
+ * Creates the [ColdPathOutliner] configured by [OUTLINE_COLD_PATHS] and [COLD_PATH_REPORTER], or returns `null`
+ * if cold paths are not outlined.
+ */
+internal fun Options.coldPathOutliner(typeHierarchy: TypeHierarchy?): ColdPathOutliner? =
+    if (this[OUTLINE_COLD_PATHS] == true) ColdPathOutliner(ASM_API, typeHierarchy, this[COLD_PATH_REPORTER])
+    else null
+
 /**
  * Read more in [NestLogic]
  */
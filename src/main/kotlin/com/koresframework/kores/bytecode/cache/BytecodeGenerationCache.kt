@@ -0,0 +1,74 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.cache
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+
+/**
+ * Cache of generated classes, used by [com.koresframework.kores.bytecode.processor.BytecodeGenerator] to avoid
+ * running processors for declarations that were already generated with the same options.
+ *
+ * Implementations must be thread-safe.
+ */
+interface BytecodeGenerationCache {
+
+    /**
+     * Gets classes generated for [key].
+     *
+     * @param key Key of generated declaration.
+     * @param declaration Declaration being generated.
+     * @return Classes generated for [key], or `null` if there is no entry for [key].
+     */
+    fun get(key: GenerationKey, declaration: TypeDeclaration): List<BytecodeClass>?
+
+    /**
+     * Stores [classes] generated from [declaration] with [key].
+     *
+     * @param key Key of generated declaration.
+     * @param declaration Generated declaration.
+     * @param classes Classes generated from [declaration].
+     */
+    fun put(key: GenerationKey, declaration: TypeDeclaration, classes: List<BytecodeClass>)
+
+    /**
+     * Current statistics of this cache.
+     */
+    val stats: CacheStats
+}
+
+/**
+ * Statistics of a [BytecodeGenerationCache] or of the class cache of a
+ * [cached class loader][com.koresframework.kores.bytecode.classloader.CachedCodeClassLoader].
+ *
+ * @property hits Amount of lookups which found an entry.
+ * @property misses Amount of lookups which did not find an entry.
+ * @property evictions Amount of entries removed to respect cache bounds.
+ * @property size Current amount of entries.
+ */
+data class CacheStats(val hits: Long, val misses: Long, val evictions: Long, val size: Int)
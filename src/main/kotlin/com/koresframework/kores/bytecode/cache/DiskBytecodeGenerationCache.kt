@@ -0,0 +1,370 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.cache
+
+import com.koresframework.kores.base.ClassDeclaration
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import com.koresframework.kores.bytecode.util.allTypes
+import java.io.Closeable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.FileLock
+import java.nio.channels.OverlappingFileLockException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.stream.Collectors
+import java.util.zip.CRC32
+
+/**
+ * Persistent [BytecodeGenerationCache] which stores generated classes in append-only segment files
+ * inside [directory]. Segments are memory-mapped for reads, and an in-memory index of [keys][GenerationKey]
+ * to record locations is rebuilt from segments when the cache is opened, so entries survive JVM restarts.
+ *
+ * Entries are never rewritten or removed, a new segment is started when the current one reaches
+ * [maxSegmentSize]. A partially written record at the end of the last segment (for example, after a crash)
+ * is discarded when the cache is opened. Every record has a `CRC32` checksum, checked when the record is read,
+ * records which do not match are treated as missing and generated again.
+ *
+ * [BytecodeClass]es of cached entries are backed by slices of the mapped segment, class bytes are only copied
+ * when an array is needed. Declarations are resolved from the declaration being generated by binary name,
+ * classes which are not part of the declaration tree (such as `SwitchOnEnum` mappings) receive a
+ * [ClassDeclaration] with only the name.
+ *
+ * [directory] is locked while the cache is open, so it can not be used by two caches (of this or another process)
+ * at the same time.
+ *
+ * @property directory Directory to store segment files.
+ * @property maxSegmentSize Size that a segment may reach before a new segment is started.
+ */
+class DiskBytecodeGenerationCache @JvmOverloads constructor(
+    val directory: Path,
+    val maxSegmentSize: Long = DEFAULT_SEGMENT_SIZE
+) : BytecodeGenerationCache, Closeable {
+
+    private val index = ConcurrentHashMap<GenerationKey, Location>()
+    private val segments = mutableListOf<Segment>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private var closed = false
+    private val lock: FileLock
+
+    init {
+        Files.createDirectories(this.directory)
+
+        val lockChannel = FileChannel.open(
+            this.directory.resolve(LOCK_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE
+        )
+
+        this.lock = try {
+            lockChannel.tryLock()
+        } catch (e: OverlappingFileLockException) {
+            null
+        } ?: run {
+            lockChannel.close()
+            throw IllegalStateException("Cache directory '${this.directory}' is used by another cache.")
+        }
+
+        try {
+            this.open()
+        } catch (t: Throwable) {
+            this.segments.forEach { it.close() }
+            lockChannel.close()
+            throw t
+        }
+    }
+
+    private fun open() {
+        Files.list(this.directory).use { files ->
+            files.filter { it.fileName.toString().let { name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) } }
+                .sorted()
+                .collect(Collectors.toList())
+        }.forEachIndexed { i, path ->
+            this.segments.add(Segment(i, path).also { it.load(this.index) })
+        }
+
+        if (this.segments.isEmpty())
+            this.segments.add(Segment(0, this.segmentPath(0)))
+    }
+
+    override fun get(key: GenerationKey, declaration: TypeDeclaration): List<BytecodeClass>? {
+        val location = this.index[key]
+
+        if (location == null) {
+            this.misses.incrementAndGet()
+            return null
+        }
+
+        val segment = synchronized(this) {
+            if (this.closed)
+                throw IllegalStateException("Cache is closed.")
+
+            this.segments[location.segment]
+        }
+
+        val record = segment.read(location)
+
+        if (record == null) {
+            // Corrupted record, generated again and appended as a new record
+            this.index.remove(key, location)
+            this.misses.incrementAndGet()
+            return null
+        }
+
+        val types by lazy { declaration.allTypes().associateBy { it.type } }
+
+        this.hits.incrementAndGet()
+
+        return record.classes.map { (name, bytes) ->
+            BytecodeClass(
+                types[name] ?: ClassDeclaration.Builder.builder().specifiedName(name).build(),
+                bytes
+            )
+        }
+    }
+
+    override fun put(key: GenerationKey, declaration: TypeDeclaration, classes: List<BytecodeClass>) {
+        if (this.index.containsKey(key))
+            return
+
+        val record = encode(key, classes)
+
+        synchronized(this) {
+            if (this.closed)
+                throw IllegalStateException("Cache is closed.")
+
+            if (this.index.containsKey(key))
+                return
+
+            var segment = this.segments.last()
+
+            if (segment.size > 0 && segment.size + record.remaining() > this.maxSegmentSize) {
+                segment = Segment(segment.id + 1, this.segmentPath(segment.id + 1))
+                this.segments.add(segment)
+            }
+
+            this.index[key] = segment.append(record)
+        }
+    }
+
+    override val stats: CacheStats
+        get() = CacheStats(this.hits.get(), this.misses.get(), 0, this.index.size)
+
+    /**
+     * Closes segment files and releases the lock of [directory]. Mapped segments are released by the garbage
+     * collector, once no [BytecodeClass] read from this cache is reachable.
+     */
+    override fun close() {
+        synchronized(this) {
+            if (!this.closed) {
+                this.closed = true
+                this.segments.forEach { it.close() }
+                this.lock.channel().close()
+            }
+        }
+    }
+
+    private fun segmentPath(id: Int): Path =
+        this.directory.resolve("$SEGMENT_PREFIX${id.toString().padStart(8, '0')}$SEGMENT_SUFFIX")
+
+    private data class Location(val segment: Int, val offset: Long, val length: Int)
+
+    private class Record(val key: String, val classes: List<Pair<String, ByteBuffer>>)
+
+    private class Segment(val id: Int, val path: Path) : Closeable {
+        private val channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        )
+
+        @Volatile
+        var size: Long = this.channel.size()
+            private set
+
+        @Volatile
+        private var mapped: MappedByteBuffer? = null
+
+        /**
+         * Indexes all complete records of this segment, and discards a partial record at the end.
+         */
+        fun load(index: MutableMap<GenerationKey, Location>) {
+            val buffer = this.map(this.size)
+            var offset = 0L
+
+            while (offset + HEADER_SIZE <= this.size) {
+                buffer.position(offset.toInt())
+
+                if (buffer.int != MAGIC)
+                    break
+
+                val length = buffer.int
+
+                if (length < 0 || offset + HEADER_SIZE + length > this.size)
+                    break
+
+                buffer.int // Checksum, checked on read
+
+                val key = decodeKey(buffer)
+
+                index[GenerationKey(key)] = Location(this.id, offset, HEADER_SIZE + length)
+                offset += HEADER_SIZE + length
+            }
+
+            if (offset != this.size) {
+                this.channel.truncate(offset)
+                this.size = offset
+                this.mapped = null
+            }
+        }
+
+        fun append(record: ByteBuffer): Location {
+            val offset = this.size
+            val length = record.remaining()
+
+            while (record.hasRemaining()) {
+                this.channel.write(record, offset + (length - record.remaining()))
+            }
+
+            this.size = offset + length
+
+            return Location(this.id, offset, length)
+        }
+
+        /**
+         * Reads the record at [location], or returns `null` if its checksum does not match. Class bytes are
+         * slices of the mapped segment.
+         */
+        fun read(location: Location): Record? {
+            val end = location.offset + location.length
+            val buffer = (this.mapped?.takeIf { it.capacity() >= end } ?: this.map(end)).duplicate()
+            val start = location.offset.toInt()
+
+            buffer.position(start + HEADER_SIZE - 4)
+
+            val crc = buffer.int
+
+            if (checksum(buffer.duplicate().limit(start + location.length)) != crc)
+                return null
+
+            val key = decodeKey(buffer)
+            val count = buffer.int
+
+            val classes = (0 until count).map {
+                val name = decodeString(buffer)
+                val size = buffer.int
+                val bytes = buffer.slice(buffer.position(), size)
+                buffer.position(buffer.position() + size)
+                name to bytes
+            }
+
+            return Record(key, classes)
+        }
+
+        @Synchronized
+        private fun map(minSize: Long): MappedByteBuffer {
+            val current = this.mapped
+
+            if (current != null && current.capacity() >= minSize)
+                return current
+
+            if (this.size > Int.MAX_VALUE)
+                throw IOException("Segment '$path' is too large to be mapped.")
+
+            return this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size).also {
+                this.mapped = it
+            }
+        }
+
+        override fun close() {
+            this.channel.close()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_SEGMENT_SIZE = 64L * 1024L * 1024L
+
+        private const val SEGMENT_PREFIX = "segment-"
+        private const val SEGMENT_SUFFIX = ".kbc"
+        private const val MAGIC = 0x4B424332 // KBC2
+        private const val HEADER_SIZE = 12
+        private const val LOCK_FILE = "cache.lock"
+
+        private fun encode(key: GenerationKey, classes: List<BytecodeClass>): ByteBuffer {
+            val keyBytes = key.hash.toByteArray(Charsets.UTF_8)
+            val entries = classes.map {
+                val name = (it.declaration as? TypeDeclaration)?.type ?: it.declaration.name
+                name.toByteArray(Charsets.UTF_8) to it.rawBytecode
+            }
+
+            val length = 2 + keyBytes.size + 4 + entries.sumOf { (name, bytes) -> 2 + name.size + 4 + bytes.size }
+            val buffer = ByteBuffer.allocate(HEADER_SIZE + length)
+
+            buffer.putInt(MAGIC)
+            buffer.putInt(length)
+            buffer.putInt(0) // Checksum
+            buffer.putShort(keyBytes.size.toShort())
+            buffer.put(keyBytes)
+            buffer.putInt(entries.size)
+
+            entries.forEach { (name, bytes) ->
+                buffer.putShort(name.size.toShort())
+                buffer.put(name)
+                buffer.putInt(bytes.size)
+                buffer.put(bytes)
+            }
+
+            buffer.flip()
+            buffer.putInt(HEADER_SIZE - 4, checksum(buffer.duplicate().position(HEADER_SIZE)))
+
+            return buffer
+        }
+
+        /**
+         * `CRC32` of the remaining bytes of [buffer].
+         */
+        private fun checksum(buffer: ByteBuffer): Int =
+            CRC32().also { it.update(buffer) }.value.toInt()
+
+        private fun decodeKey(buffer: ByteBuffer): String = decodeString(buffer)
+
+        private fun decodeString(buffer: ByteBuffer): String {
+            val bytes = ByteArray(buffer.short.toInt() and 0xFFFF)
+            buffer.get(bytes)
+            return String(bytes, Charsets.UTF_8)
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.cache
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * In-memory [BytecodeGenerationCache] holding at most [maxEntries] entries, least recently used entries
+ * are evicted first.
+ */
+class MemoryBytecodeGenerationCache @JvmOverloads constructor(val maxEntries: Int = 1024) :
+    BytecodeGenerationCache {
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    private val entries = object : LinkedHashMap<GenerationKey, List<BytecodeClass>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<GenerationKey, List<BytecodeClass>>?): Boolean {
+            val remove = this.size > maxEntries
+
+            if (remove)
+                evictions.incrementAndGet()
+
+            return remove
+        }
+    }
+
+    init {
+        require(maxEntries > 0) { "maxEntries must be greater than zero. Provided: $maxEntries" }
+    }
+
+    override fun get(key: GenerationKey, declaration: TypeDeclaration): List<BytecodeClass>? {
+        val classes = synchronized(this.entries) { this.entries[key] }
+
+        if (classes != null) this.hits.incrementAndGet()
+        else this.misses.incrementAndGet()
+
+        return classes
+    }
+
+    override fun put(key: GenerationKey, declaration: TypeDeclaration, classes: List<BytecodeClass>) {
+        val copy = classes.toList()
+
+        synchronized(this.entries) {
+            this.entries[key] = copy
+        }
+    }
+
+    /**
+     * Removes all entries of this cache. Statistics are not reset.
+     */
+    fun clear() {
+        synchronized(this.entries) {
+            this.entries.clear()
+        }
+    }
+
+    override val stats: CacheStats
+        get() = CacheStats(
+            this.hits.get(),
+            this.misses.get(),
+            this.evictions.get(),
+            synchronized(this.entries) { this.entries.size }
+        )
+}
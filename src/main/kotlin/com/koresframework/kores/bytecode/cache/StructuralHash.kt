@@ -0,0 +1,257 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.cache
+
+import com.github.jonathanxd.iutils.option.Option
+import com.github.jonathanxd.iutils.option.Options
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BYTECODE_OUTPUT_OPTIONS
+import com.koresframework.kores.bytecode.post.DeadCodeRemover
+import com.koresframework.kores.bytecode.post.GotoOptimizer
+import com.koresframework.kores.bytecode.post.LocalSlotReuser
+import com.koresframework.kores.bytecode.post.MethodProcessor
+import com.koresframework.kores.bytecode.processor.VERSION
+import com.koresframework.kores.type.KoresType
+import java.lang.reflect.Method
+import java.lang.reflect.Type as ReflectType
+import java.security.MessageDigest
+import java.util.Collections
+import java.util.IdentityHashMap
+
+/**
+ * Key of a generated declaration, a SHA-256 [hash] of the declaration structure and generation options.
+ */
+data class GenerationKey(val hash: String) {
+    override fun toString(): String = this.hash
+}
+
+/**
+ * Computes stable structural keys of declarations.
+ *
+ * The declaration tree is walked and every element is fed to the digest as it is visited: Kores declarations and
+ * instructions are data classes, so their class name and every component are hashed, collections are hashed
+ * element by element, and type references which are not declarations are hashed by name. Parts which are not data classes (such as
+ * [com.koresframework.kores.bytecode.processor.processors.InstructionCodePart]) are hashed by their class name and
+ * `toString`, and must provide a stable `toString` to be cached across runs.
+ *
+ * Only the [post-processors][com.koresframework.kores.bytecode.POST_PROCESSORS] provided by Kores, which are
+ * stateless, can be part of a key. Declarations generated with other post-processors are not cached, as their
+ * output may depend on state which is not part of the key.
+ */
+object StructuralHash {
+
+    /**
+     * Post-processors which are identified by their class.
+     */
+    private val STATELESS_PROCESSORS = setOf<MethodProcessor>(DeadCodeRemover, GotoOptimizer, LocalSlotReuser)
+
+    /**
+     * Computes the key of [declaration] generated with [options] and [sourceFile] name, or returns `null` if
+     * the generated classes depend on options which can not be part of a key.
+     */
+    fun of(declaration: TypeDeclaration, options: Options, sourceFile: String): GenerationKey? {
+        val digest = MessageDigest.getInstance("SHA-256")
+
+        digest.update("version:$VERSION\n")
+        digest.update("source:$sourceFile\n")
+
+        BYTECODE_OUTPUT_OPTIONS.forEachIndexed { index, option ->
+            digest.update("option$index:${valueString(options, option) ?: return null}\n")
+        }
+
+        Walker(digest).visit(declaration)
+
+        return GenerationKey(digest.digest().joinToString(separator = "") { "%02x".format(it) })
+    }
+
+    /**
+     * String of the value of [option], or `null` if it has processors which are not [STATELESS_PROCESSORS].
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun valueString(options: Options, option: Option<*>): String? =
+        when (val value = options[option as Option<Any?>]) {
+            is List<*> ->
+                if (value.all { it in STATELESS_PROCESSORS })
+                    value.joinToString(prefix = "[", postfix = "]") { it!!.javaClass.name }
+                else null
+            else -> value.toString()
+        }
+
+    private fun MessageDigest.update(str: String) {
+        this.update(str.toByteArray(Charsets.UTF_8))
+    }
+
+    /**
+     * Feeds elements of a declaration tree to [digest], every element is preceded by a tag, and variable length
+     * elements by their length, so different trees never produce the same input.
+     */
+    private class Walker(private val digest: MessageDigest) {
+
+        private val walking = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+
+        fun visit(value: Any?) {
+            when (value) {
+                null -> this.tag(NULL)
+                is String -> {
+                    this.tag(STRING)
+                    this.string(value)
+                }
+                is Number, is Boolean, is Char -> {
+                    this.tag(VALUE)
+                    this.string(value.javaClass.name)
+                    this.string(value.toString())
+                }
+                is Enum<*> -> {
+                    this.tag(ENUM)
+                    this.string(value.declaringClass.name)
+                    this.string(value.name)
+                }
+                is Map<*, *> -> {
+                    this.tag(MAP)
+                    this.int(value.size)
+                    value.forEach { (k, v) ->
+                        this.visit(k)
+                        this.visit(v)
+                    }
+                }
+                is Collection<*> -> {
+                    this.tag(COLLECTION)
+                    this.int(value.size)
+                    value.forEach(this::visit)
+                }
+                is Array<*> -> {
+                    this.tag(COLLECTION)
+                    this.int(value.size)
+                    value.forEach(this::visit)
+                }
+                is Class<*> -> {
+                    this.tag(TYPE)
+                    this.string(value.name)
+                }
+                is KoresType -> {
+                    // Declarations are walked, declarations being walked (such as outer types of inner types)
+                    // and plain type references are hashed by name
+                    if (value in this.walking || !this.visitData(value)) {
+                        this.tag(TYPE)
+                        this.string(value.toString())
+                    }
+                }
+                is ReflectType -> {
+                    this.tag(TYPE)
+                    this.string(value.typeName)
+                }
+                else -> this.visitObject(value)
+            }
+        }
+
+        /**
+         * Visits components of [value] if it is a data class, returns `false` otherwise.
+         */
+        private fun visitData(value: Any): Boolean {
+            val components = DATA_COMPONENTS.get(value.javaClass)
+
+            if (components.isEmpty())
+                return false
+
+            this.walking.add(value)
+            this.tag(DATA)
+            this.string(value.javaClass.name)
+            this.int(components.size)
+            components.forEach { this.visit(it.invoke(value)) }
+            this.walking.remove(value)
+
+            return true
+        }
+
+        private fun visitObject(value: Any) {
+            when {
+                this.visitData(value) -> Unit
+                value is Iterable<*> -> {
+                    this.tag(ITERABLE)
+                    this.string(value.javaClass.name)
+                    value.forEach(this::visit)
+                    this.tag(END)
+                }
+                else -> {
+                    this.tag(OTHER)
+                    this.string(value.javaClass.name)
+                    this.string(value.toString())
+                }
+            }
+        }
+
+        private fun tag(tag: Int) {
+            this.digest.update(tag.toByte())
+        }
+
+        private fun int(value: Int) {
+            this.digest.update((value ushr 24).toByte())
+            this.digest.update((value ushr 16).toByte())
+            this.digest.update((value ushr 8).toByte())
+            this.digest.update(value.toByte())
+        }
+
+        private fun string(value: String) {
+            val bytes = value.toByteArray(Charsets.UTF_8)
+
+            this.int(bytes.size)
+            this.digest.update(bytes)
+        }
+
+        companion object {
+            /**
+             * `componentN` functions of Kotlin data classes, which have a `copy` function and `componentN` functions
+             * for every property of the primary constructor.
+             */
+            private val DATA_COMPONENTS = object : ClassValue<List<Method>>() {
+                override fun computeValue(type: Class<*>): List<Method> {
+                    if (!type.isAnnotationPresent(Metadata::class.java) || type.methods.none { it.name == "copy" })
+                        return emptyList()
+
+                    return generateSequence(1) { it + 1 }
+                        .map { n -> type.methods.firstOrNull { it.name == "component$n" && it.parameterCount == 0 } }
+                        .takeWhile { it != null }
+                        .filterNotNull()
+                        .toList()
+                }
+            }
+
+            private const val NULL = 0
+            private const val STRING = 1
+            private const val VALUE = 2
+            private const val ENUM = 3
+            private const val TYPE = 4
+            private const val MAP = 5
+            private const val COLLECTION = 6
+            private const val DATA = 7
+            private const val ITERABLE = 8
+            private const val OTHER = 9
+            private const val END = 10
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.cache
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Two-level [BytecodeGenerationCache]: lookups go to [first] (generally a [MemoryBytecodeGenerationCache])
+ * and then to [second] (generally a [DiskBytecodeGenerationCache]). Entries found in [second] are
+ * promoted to [first], and new entries are stored in both.
+ */
+class TieredBytecodeGenerationCache(
+    val first: BytecodeGenerationCache,
+    val second: BytecodeGenerationCache
+) : BytecodeGenerationCache {
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    override fun get(key: GenerationKey, declaration: TypeDeclaration): List<BytecodeClass>? {
+        val classes = this.first.get(key, declaration)
+            ?: this.second.get(key, declaration)?.also { this.first.put(key, declaration, it) }
+
+        if (classes != null) this.hits.incrementAndGet()
+        else this.misses.incrementAndGet()
+
+        return classes
+    }
+
+    override fun put(key: GenerationKey, declaration: TypeDeclaration, classes: List<BytecodeClass>) {
+        this.first.put(key, declaration, classes)
+        this.second.put(key, declaration, classes)
+    }
+
+    /**
+     * Statistics of both tiers. [Evictions][CacheStats.evictions] are evictions of [first] and
+     * [size][CacheStats.size] is the size of [second].
+     */
+    override val stats: CacheStats
+        get() = CacheStats(
+            this.hits.get(),
+            this.misses.get(),
+            this.first.stats.evictions,
+            this.second.stats.size
+        )
+}
@@ -32,6 +32,10 @@ import com.koresframework.kores.bytecode.BytecodeClass
 import com.koresframework.kores.type.`is`
 import java.lang.reflect.Type
 
+/**
+ * Class loader of generated classes. This class loader is [parallel capable][ClassLoader.isRegisteredAsParallelCapable],
+ * classes are defined holding only the [lock of the class name][getClassLoadingLock].
+ */
 open class BytecodeCodeClassLoader : ClassLoader {
 
     constructor() : super()
@@ -45,7 +49,11 @@ open class BytecodeCodeClassLoader : ClassLoader {
      * @return Defined Class.
      */
     open fun define(typeDeclaration: TypeDeclaration, bytes: ByteArray): Class<*> {
-        return super.defineClass(typeDeclaration.type, bytes, 0, bytes.size)
+        val name = typeDeclaration.type
+
+        synchronized(this.getClassLoadingLock(name)) {
+            return super.defineClass(name, bytes, 0, bytes.size)
+        }
     }
 
     /**
@@ -58,7 +66,7 @@ open class BytecodeCodeClassLoader : ClassLoader {
         val type = (bytecodeClass.declaration as? TypeDeclaration)
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-        return this.define(type, bytecodeClass.bytecode)
+        return this.define(type, bytecodeClass.rawBytecode)
     }
 
     /**
@@ -103,7 +111,7 @@ open class BytecodeCodeClassLoader : ClassLoader {
         val type = (bytecodeClass.declaration as? TypeDeclaration)
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-        val define = this.define(type, bytecodeClass.bytecode)
+        val define = this.define(type, bytecodeClass.rawBytecode)
 
         bytecodeClasses.forEach {
             this.define(it)
@@ -137,7 +145,7 @@ open class BytecodeCodeClassLoader : ClassLoader {
             val type = (bytecodeClass.declaration as? TypeDeclaration)
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-            val define = this.define(type, bytecodeClass.bytecode)
+            val define = this.define(type, bytecodeClass.rawBytecode)
             val outerType = bytecodeClass.declaration.outerType
             val outerLazy by lazy {
                 known.firstOrNull { outerType != null && (it.bytecodeClass.declaration as Type).`is`(outerType) }
@@ -155,4 +163,10 @@ open class BytecodeCodeClassLoader : ClassLoader {
 
         return collection
     }
+
+    companion object {
+        init {
+            registerAsParallelCapable()
+        }
+    }
 }
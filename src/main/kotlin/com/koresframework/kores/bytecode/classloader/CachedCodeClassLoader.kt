@@ -28,28 +28,60 @@
 package com.koresframework.kores.bytecode.classloader
 
 import com.koresframework.kores.base.TypeDeclaration
-import java.util.*
+import com.koresframework.kores.bytecode.cache.CacheStats
+import java.util.Collections
 
 /**
- * Cache all defined classes.
+ * Cache all defined classes by binary name. This class loader is [parallel capable][ClassLoader.isRegisteredAsParallelCapable],
+ * classes may be defined and looked up concurrently.
+ *
+ * @property mode How declarations of defined classes are retained, by default declarations are strongly referenced.
+ * @property maxSize Maximum amount of cached classes, oldest entries are evicted first. Evicted classes are still
+ * loaded by this class loader, but are no longer [cached][getCachedClass].
  */
-class CachedCodeClassLoader : CodeClassLoader {
+class CachedCodeClassLoader @JvmOverloads constructor(
+    parent: ClassLoader,
+    val mode: ClassCacheMode,
+    val maxSize: Int = Int.MAX_VALUE
+) : CodeClassLoader(parent) {
 
-    constructor() : super()
-    constructor(parent: ClassLoader) : super(parent)
+    constructor() : this(ClassLoader.getSystemClassLoader(), ClassCacheMode.DECLARATION)
+    constructor(parent: ClassLoader) : this(parent, ClassCacheMode.DECLARATION)
 
-    private val cache = mutableMapOf<TypeDeclaration, Class<*>>()
-    private val immutableCache = Collections.unmodifiableMap(cache)
+    private val cache = DefinedClassCache(mode, maxSize)
 
     override fun define(typeDeclaration: TypeDeclaration, bytes: ByteArray): Class<*> {
-        val define = super.define(typeDeclaration, bytes)
+        val name = typeDeclaration.type
+
+        synchronized(this.getClassLoadingLock(name)) {
+            val define = super.define(typeDeclaration, bytes)
 
-        this.cache.put(typeDeclaration, define)
+            this.cache.put(name, typeDeclaration, define)
 
-        return define
+            return define
+        }
     }
 
-    fun getCache(): Map<TypeDeclaration, Class<*>> {
-        return this.immutableCache
+    /**
+     * Gets defined class with binary [name], or `null` if there is no class with [name] cached by this class loader.
+     */
+    fun getCachedClass(name: String): Class<*>? = this.cache.get(name)
+
+    /**
+     * Gets a snapshot of cached classes whose declarations are still retained (see [mode]).
+     */
+    fun getCache(): Map<TypeDeclaration, Class<*>> =
+        Collections.unmodifiableMap(this.cache.declarations())
+
+    /**
+     * Statistics of [class cache][getCachedClass].
+     */
+    val stats: CacheStats
+        get() = this.cache.stats
+
+    companion object {
+        init {
+            registerAsParallelCapable()
+        }
     }
 }
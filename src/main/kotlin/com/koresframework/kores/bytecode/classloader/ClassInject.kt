@@ -29,17 +29,48 @@ package com.koresframework.kores.bytecode.classloader
 
 import com.koresframework.kores.base.TypeDeclaration
 import com.koresframework.kores.bytecode.BytecodeClass
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 
 /**
  * Class injection utility.
  *
- * **This code may not work in Java 9+*
+ * Classes are injected in [class loaders][ClassLoader] through a [MethodHandle] of [ClassLoader.defineClass],
+ * resolved only once. Resolution requires `java.lang` package to be open to this module
+ * (`--add-opens java.base/java.lang=ALL-UNNAMED` for unnamed modules). When this is not possible, classes may be
+ * injected in the package of an existing class (a host) through [MethodHandles.Lookup.defineClass] instead,
+ * which only requires the package of the host to be open.
  */
 object ClassInject {
 
+    /**
+     * Handle to [ClassLoader.defineClass] (`(ClassLoader, String, byte[], int, int)Class`), or the resolution error
+     * if it could not be resolved.
+     */
+    private val defineClass: Result<MethodHandle> by lazy {
+        runCatching {
+            MethodHandles.privateLookupIn(ClassLoader::class.java, MethodHandles.lookup()).findVirtual(
+                ClassLoader::class.java,
+                "defineClass",
+                MethodType.methodType(
+                    Class::class.java,
+                    String::class.java,
+                    ByteArray::class.java,
+                    Int::class.javaPrimitiveType,
+                    Int::class.javaPrimitiveType
+                )
+            )
+        }
+    }
+
     /**
      * Inject class in [this classloader][ClassLoader].
      *
+     * Requires `java.lang` package to be open to Kores, for example with
+     * `--add-opens java.base/java.lang=ALL-UNNAMED` when Kores is in the class path, otherwise inject in a host
+     * class package with [Class.inject].
+     *
      * @param bytecodeClass Bytecode class to inject
      * @return Defined class
      * @throws IllegalStateException if the injection fails.
@@ -48,12 +79,16 @@ object ClassInject {
         val type = (bytecodeClass.declaration as? TypeDeclaration)?.type
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-        return this.inject(type, bytecodeClass.bytecode)
+        return this.inject(type, bytecodeClass.rawBytecode)
     }
 
     /**
      * Inject class and inner classes of this class in [this classloader][ClassLoader].
      *
+     * Requires `java.lang` package to be open to Kores, for example with
+     * `--add-opens java.base/java.lang=ALL-UNNAMED` when Kores is in the class path, otherwise inject in a host
+     * class package with [Class.inject].
+     *
      * @param bytecodeClasses Bytecode classes to inject (first element must be the outer class).
      * @return Defined class.
      * @throws IllegalStateException if the injection fails or [bytecode classes array][bytecodeClasses] is empty.
@@ -78,31 +113,88 @@ object ClassInject {
     /**
      * Inject class in [this classloader][ClassLoader].
      *
+     * Requires `java.lang` package to be open to Kores, for example with
+     * `--add-opens java.base/java.lang=ALL-UNNAMED` when Kores is in the class path, otherwise inject in a host
+     * class package with [Class.inject].
+     *
      * @param name Class name
      * @param bytes Class bytes
      * @return Defined class
      * @throws IllegalStateException if the injection fails.
      */
     fun ClassLoader.inject(name: String, bytes: ByteArray): Class<*> {
-        try {
-            val defineClass = ClassLoader::class.java.getDeclaredMethod(
-                "defineClass",
-                String::class.java,
-                ByteArray::class.java,
-                Int::class.javaPrimitiveType,
-                Int::class.javaPrimitiveType
+        val defineClass = ClassInject.defineClass.getOrElse {
+            throw IllegalStateException(
+                "Injection of class '$name' in class loader '$this' failed! 'java.lang' is not open to Kores, " +
+                        "open it or inject in the package of a host class.",
+                it
             )
+        }
 
-            defineClass.isAccessible = true
-
+        // Handles throw LinkageErrors (such as duplicate definitions) directly, unlike reflective invocations
+        try {
             return defineClass.invoke(this, name, bytes, 0, bytes.size) as Class<*>
         } catch (e: Exception) {
-            throw IllegalStateException(
-                "Injection of class '$name' in class loader '$this' failed!",
-                e
-            )
+            throw injectionFailure("Injection of class '$name' in class loader '$this' failed!", e)
+        } catch (e: LinkageError) {
+            throw injectionFailure("Injection of class '$name' in class loader '$this' failed!", e)
+        }
+
+    }
+
+    /**
+     * Inject class in the class loader and package of [this host class][Class]. The injected class must be in
+     * the same package of the host class.
+     *
+     * Requires the package of the host class to be open to Kores, which is always the case for classes in the
+     * class path.
+     *
+     * @param bytecodeClass Bytecode class to inject
+     * @return Defined class
+     * @throws IllegalStateException if the injection fails.
+     */
+    fun Class<*>.inject(bytecodeClass: com.koresframework.kores.bytecode.BytecodeClass): Class<*> {
+        val name = bytecodeClass.declaration.name
+
+        try {
+            // Lookups are not cached, a cached lookup would keep the host class and its loader reachable
+            return MethodHandles.privateLookupIn(this, MethodHandles.lookup()).defineClass(bytecodeClass.rawBytecode)
+        } catch (e: Exception) {
+            throw injectionFailure("Injection of class '$name' in package of host '$this' failed!", e)
+        } catch (e: LinkageError) {
+            throw injectionFailure("Injection of class '$name' in package of host '$this' failed!", e)
+        }
+    }
+
+    /**
+     * Inject class and inner classes of this class in the class loader and package of [this host class][Class].
+     *
+     * Requires the package of the host class to be open to Kores, which is always the case for classes in the
+     * class path.
+     *
+     * @param bytecodeClasses Bytecode classes to inject (first element must be the outer class).
+     * @return Defined class.
+     * @throws IllegalStateException if the injection fails or [bytecode classes array][bytecodeClasses] is empty.
+     */
+    fun Class<*>.inject(bytecodeClasses: Array<out com.koresframework.kores.bytecode.BytecodeClass>): Class<*> {
+        if (bytecodeClasses.isEmpty()) {
+            throw IllegalArgumentException("Empty 'bytecodeClasses' array")
         }
 
+        val define = this.inject(bytecodeClasses[0])
+
+        for (i in 1 until bytecodeClasses.size) {
+            this.inject(bytecodeClasses[i])
+        }
+
+        return define
     }
 
-}
\ No newline at end of file
+    /**
+     * Exception thrown when injection fails, [LinkageErrors][LinkageError] are wrapped as well, as they were
+     * when classes were injected through reflection.
+     */
+    private fun injectionFailure(message: String, cause: Throwable): IllegalStateException =
+        IllegalStateException(message, cause)
+
+}
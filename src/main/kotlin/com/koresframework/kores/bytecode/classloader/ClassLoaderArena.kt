@@ -0,0 +1,216 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.classloader
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import java.io.Closeable
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Statistics of a [ClassLoaderArena].
+ *
+ * @property scope Scope of the arena.
+ * @property classes Amount of classes defined in the arena.
+ * @property bytes Sum of class file sizes of classes defined in the arena, an approximation of metaspace used by the arena.
+ * @property closed Whether the arena is closed.
+ * @property unloaded Whether the class loader of the arena was collected, only possible after the arena is closed.
+ * A closed arena which is not unloaded after garbage collections is leaking: classes of the arena are still referenced.
+ */
+data class ArenaStats<S>(
+    val scope: S,
+    val classes: Int,
+    val bytes: Long,
+    val closed: Boolean,
+    val unloaded: Boolean
+)
+
+/**
+ * Group of generated classes defined in a dedicated [CodeClassLoader], tied to a user-defined [scope] (for example,
+ * a configuration version). [Closing][close] the arena drops every reference held by the arena, so the class loader
+ * and all classes of the arena can be unloaded once the application stops using them.
+ *
+ * @property scope Scope of the arena.
+ */
+class ClassLoaderArena<S> @JvmOverloads constructor(
+    val scope: S,
+    parent: ClassLoader = ClassLoader.getSystemClassLoader()
+) : Closeable {
+
+    private val classes = AtomicInteger()
+    private val bytes = AtomicLong()
+
+    @Volatile
+    private var loader: ArenaClassLoader? = ArenaClassLoader(parent, this.classes, this.bytes)
+    private val loaderReference = WeakReference<ClassLoader>(this.loader)
+
+    /**
+     * Whether this arena is closed.
+     */
+    val isClosed: Boolean
+        get() = this.loader == null
+
+    /**
+     * Class loader of this arena.
+     *
+     * @throws IllegalStateException If this arena is closed.
+     */
+    val classLoader: CodeClassLoader
+        get() = this.loader ?: throw IllegalStateException("Arena '$scope' is closed.")
+
+    /**
+     * Defines [bytecodeClass] in this arena.
+     *
+     * @throws IllegalStateException If this arena is closed.
+     */
+    fun define(bytecodeClass: BytecodeClass): Class<*> = this.classLoader.define(bytecodeClass)
+
+    /**
+     * Defines [classes][BytecodeClass] and inner classes in this arena.
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return First Defined Class.
+     * @throws IllegalStateException If this arena is closed.
+     */
+    fun define(bytecodeClasses: Collection<BytecodeClass>): Class<*> = this.classLoader.define(bytecodeClasses)
+
+    /**
+     * Current statistics of this arena.
+     */
+    val stats: ArenaStats<S>
+        get() = ArenaStats(
+            this.scope,
+            this.classes.get(),
+            this.bytes.get(),
+            this.isClosed,
+            this.loaderReference.get() == null
+        )
+
+    /**
+     * Closes this arena, dropping the reference to the class loader. Classes can no longer be defined in this arena.
+     */
+    override fun close() {
+        this.loader = null
+    }
+
+    private class ArenaClassLoader(
+        parent: ClassLoader,
+        private val classes: AtomicInteger,
+        private val bytes: AtomicLong
+    ) : CodeClassLoader(parent) {
+
+        override fun define(typeDeclaration: TypeDeclaration, bytes: ByteArray): Class<*> {
+            val define = super.define(typeDeclaration, bytes)
+
+            this.classes.incrementAndGet()
+            this.bytes.addAndGet(bytes.size.toLong())
+
+            return define
+        }
+
+        companion object {
+            init {
+                registerAsParallelCapable()
+            }
+        }
+    }
+}
+
+/**
+ * Registry of [arenas][ClassLoaderArena] by scope.
+ *
+ * Closed arenas are kept (without references to their class loaders) until [purged][purge], so leaking arenas may be
+ * found through [stats].
+ *
+ * @property parent Parent class loader of created arenas.
+ */
+class ClassLoaderArenas<S> @JvmOverloads constructor(
+    val parent: ClassLoader = ClassLoader.getSystemClassLoader()
+) {
+
+    private val arenas = ConcurrentHashMap<S, ClassLoaderArena<S>>()
+    private val closed = ConcurrentLinkedQueue<ClassLoaderArena<S>>()
+
+    /**
+     * Gets the open arena of [scope], or creates a new one if there is no arena for [scope] or if it is closed.
+     * A replaced closed arena is kept until [purged][purge].
+     */
+    fun arena(scope: S): ClassLoaderArena<S> =
+        this.arenas.compute(scope) { _, arena ->
+            when {
+                arena == null -> ClassLoaderArena(scope, this.parent)
+                arena.isClosed -> {
+                    this.closed.add(arena)
+                    ClassLoaderArena(scope, this.parent)
+                }
+                else -> arena
+            }
+        }!!
+
+    /**
+     * Closes the arena of [scope]. The closed arena is kept until [purged][purge].
+     *
+     * @return Whether there was an open arena for [scope].
+     */
+    fun close(scope: S): Boolean {
+        var wasOpen = false
+
+        this.arenas.computeIfPresent(scope) { _, arena ->
+            wasOpen = !arena.isClosed
+            arena.close()
+            this.closed.add(arena)
+            null
+        }
+
+        return wasOpen
+    }
+
+    /**
+     * Removes closed arenas whose class loaders were unloaded.
+     */
+    fun purge() {
+        this.closed.removeIf { it.stats.unloaded }
+        this.arenas.values.removeIf { it.stats.unloaded }
+    }
+
+    /**
+     * Statistics of every arena, including closed arenas which were not [purged][purge].
+     */
+    fun stats(): List<ArenaStats<S>> =
+        (this.closed + this.arenas.values).map { it.stats }
+
+    /**
+     * Sum of class file sizes of classes defined in open arenas.
+     */
+    val openBytes: Long
+        get() = this.arenas.values.filterNot { it.isClosed }.sumOf { it.stats.bytes }
+}
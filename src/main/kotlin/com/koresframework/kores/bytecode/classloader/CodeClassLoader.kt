@@ -30,6 +30,10 @@ package com.koresframework.kores.bytecode.classloader
 import com.koresframework.kores.base.TypeDeclaration
 import com.koresframework.kores.bytecode.BytecodeClass
 
+/**
+ * Class loader of generated classes. This class loader is [parallel capable][ClassLoader.isRegisteredAsParallelCapable],
+ * classes are defined holding only the [lock of the class name][getClassLoadingLock].
+ */
 open class CodeClassLoader : ClassLoader {
 
     constructor() : super()
@@ -43,7 +47,11 @@ open class CodeClassLoader : ClassLoader {
      * @return Defined Class.
      */
     open fun define(typeDeclaration: TypeDeclaration, bytes: ByteArray): Class<*> {
-        return super.defineClass(typeDeclaration.type, bytes, 0, bytes.size)
+        val name = typeDeclaration.type
+
+        synchronized(this.getClassLoadingLock(name)) {
+            return super.defineClass(name, bytes, 0, bytes.size)
+        }
     }
 
     /**
@@ -56,7 +64,7 @@ open class CodeClassLoader : ClassLoader {
         val type = (bytecodeClass.declaration as? TypeDeclaration)
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-        return this.define(type, bytecodeClass.bytecode)
+        return this.define(type, bytecodeClass.rawBytecode)
     }
 
     /**
@@ -101,7 +109,7 @@ open class CodeClassLoader : ClassLoader {
         val type = (bytecodeClass.declaration as? TypeDeclaration)
                 ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
 
-        val define = this.define(type, bytecodeClass.bytecode)
+        val define = this.define(type, bytecodeClass.rawBytecode)
 
         bytecodeClasses.forEach {
             this.define(it)
@@ -109,4 +117,10 @@ open class CodeClassLoader : ClassLoader {
 
         return define
     }
+
+    companion object {
+        init {
+            registerAsParallelCapable()
+        }
+    }
 }
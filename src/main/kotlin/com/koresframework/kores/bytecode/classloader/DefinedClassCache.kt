@@ -0,0 +1,127 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.classloader
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.cache.CacheStats
+import java.lang.ref.Reference
+import java.lang.ref.SoftReference
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * How [cached class loaders][CachedCodeClassLoader] retain declarations of defined classes. Classes are always
+ * cached by binary name, defined classes are strongly referenced by their class loader regardless of the mode.
+ */
+enum class ClassCacheMode {
+    /**
+     * Declarations are strongly referenced, keeping the entire declaration tree of every defined class in memory.
+     */
+    DECLARATION,
+
+    /**
+     * Declarations are [softly referenced][SoftReference], cleared when memory is needed.
+     */
+    SOFT_DECLARATION,
+
+    /**
+     * Declarations are [weakly referenced][WeakReference], cleared as soon as they are not referenced elsewhere.
+     */
+    WEAK_DECLARATION,
+
+    /**
+     * Declarations are dropped after the class is defined, only names are retained.
+     */
+    NAME
+}
+
+/**
+ * Cache of classes defined by a class loader, keyed by binary name. When the cache has more than [maxSize] entries,
+ * the oldest entries are evicted.
+ */
+internal class DefinedClassCache(val mode: ClassCacheMode, val maxSize: Int) {
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+    private val order = ConcurrentLinkedQueue<String>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    init {
+        require(maxSize > 0) { "maxSize must be greater than zero. Provided: $maxSize" }
+    }
+
+    fun put(name: String, declaration: TypeDeclaration, definedClass: Class<*>) {
+        val held: Any? = when (this.mode) {
+            ClassCacheMode.DECLARATION -> declaration
+            ClassCacheMode.SOFT_DECLARATION -> SoftReference(declaration)
+            ClassCacheMode.WEAK_DECLARATION -> WeakReference(declaration)
+            ClassCacheMode.NAME -> null
+        }
+
+        this.entries[name] = Entry(definedClass, held)
+
+        if (this.maxSize != Int.MAX_VALUE) {
+            this.order.add(name)
+
+            while (this.entries.size > this.maxSize) {
+                val eldest = this.order.poll() ?: break
+
+                if (this.entries.remove(eldest) != null)
+                    this.evictions.incrementAndGet()
+            }
+        }
+    }
+
+    fun get(name: String): Class<*>? {
+        val entry = this.entries[name]
+
+        if (entry != null) this.hits.incrementAndGet()
+        else this.misses.incrementAndGet()
+
+        return entry?.definedClass
+    }
+
+    /**
+     * Snapshot of cached classes whose declarations are still retained.
+     */
+    fun declarations(): Map<TypeDeclaration, Class<*>> =
+        this.entries.values.mapNotNull { entry -> entry.declaration()?.let { it to entry.definedClass } }.toMap()
+
+    val stats: CacheStats
+        get() = CacheStats(this.hits.get(), this.misses.get(), this.evictions.get(), this.entries.size)
+
+    private class Entry(val definedClass: Class<*>, private val declaration: Any?) {
+        fun declaration(): TypeDeclaration? = when (this.declaration) {
+            is Reference<*> -> this.declaration.get() as TypeDeclaration?
+            else -> this.declaration as TypeDeclaration?
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.classloader
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import com.koresframework.kores.type.`is`
+import java.lang.invoke.MethodHandles
+import java.lang.reflect.Type
+
+/**
+ * Defines generated classes as [hidden classes][MethodHandles.Lookup.defineHiddenClass] using [lookup]. Hidden classes
+ * are not defined in a class loader, so each one is unloaded as soon as it becomes unreachable (unless
+ * [STRONG][MethodHandles.Lookup.ClassOption.STRONG] option is provided), instead of when the whole loader is
+ * unreachable.
+ *
+ * Classes must be in the same package as the [lookup class][MethodHandles.Lookup.lookupClass] and [lookup] must have
+ * [full privilege access][MethodHandles.Lookup.hasFullPrivilegeAccess].
+ *
+ * Hidden classes cannot be referred by name: a generated class which refers to another generated class by its name
+ * (for example, inner classes which access outer class members) only works when the referred class is also
+ * reachable by name from the [lookup class][MethodHandles.Lookup.lookupClass] loader. `NestHost` and `NestMembers`
+ * attributes of hidden classes are ignored by JVM, the nest of hidden classes is defined by [NESTMATE][MethodHandles.Lookup.ClassOption.NESTMATE]
+ * option instead: the first class of a batch is the nest host of the remaining classes.
+ *
+ * @property lookup Lookup used to define classes.
+ * @property initialize Whether classes should be initialized after being defined.
+ * @property options Options of every defined class.
+ */
+class HiddenClassDefiner @JvmOverloads constructor(
+    val lookup: MethodHandles.Lookup,
+    val initialize: Boolean = false,
+    val options: Set<MethodHandles.Lookup.ClassOption> = emptySet()
+) {
+
+    /**
+     * Defines [bytecodeClass] as a hidden class.
+     *
+     * @return Lookup of defined class, with full privilege access.
+     */
+    fun defineLookup(bytecodeClass: BytecodeClass): MethodHandles.Lookup =
+        this.lookup.defineHiddenClass(bytecodeClass.rawBytecode, this.initialize, *this.options.toTypedArray())
+
+    /**
+     * Defines [bytecodeClass] as a hidden class.
+     *
+     * @return Defined Class.
+     */
+    fun define(bytecodeClass: BytecodeClass): Class<*> =
+        this.defineLookup(bytecodeClass).lookupClass()
+
+    /**
+     * Defines [bytecodeClass] as a hidden class member of the nest of [host].
+     *
+     * @param host Lookup of nest host (or a member of the nest), with full privilege access.
+     * @return Defined Class.
+     */
+    fun defineNestmate(host: MethodHandles.Lookup, bytecodeClass: BytecodeClass): Class<*> =
+        host.defineHiddenClass(
+            bytecodeClass.rawBytecode,
+            this.initialize,
+            *(this.options + MethodHandles.Lookup.ClassOption.NESTMATE).toTypedArray()
+        ).lookupClass()
+
+    /**
+     * Defines [bytecodeClass] as a hidden class member of the nest of [loaded class][LoadedBytecodeClass.loadedClass]
+     * of [host]. [host] class must be in the same module of [lookup class][MethodHandles.Lookup.lookupClass] or in a
+     * module opened to it.
+     *
+     * @return Defined Class.
+     */
+    fun defineNestmate(host: LoadedBytecodeClass, bytecodeClass: BytecodeClass): Class<*> =
+        this.defineNestmate(MethodHandles.privateLookupIn(host.loadedClass, this.lookup), bytecodeClass)
+
+    /**
+     * Defines [classes][BytecodeClass] as hidden classes, the first class is the nest host of remaining classes.
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return First Defined Class.
+     */
+    fun define(bytecodeClasses: Array<out BytecodeClass>): Class<*> =
+        this.define(bytecodeClasses.iterator())
+
+    /**
+     * Defines [classes][BytecodeClass] as hidden classes, the first class is the nest host of remaining classes.
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return First Defined Class.
+     */
+    fun define(bytecodeClasses: Collection<BytecodeClass>): Class<*> =
+        this.define(bytecodeClasses.iterator())
+
+    /**
+     * Defines [classes][BytecodeClass] as hidden classes, the first class is the nest host of remaining classes.
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return First Defined Class.
+     */
+    fun define(bytecodeClasses: Iterator<BytecodeClass>): Class<*> =
+        this.defineEveryTo(mutableListOf(), bytecodeClasses).first().loadedClass
+
+    /**
+     * Defines every [class][BytecodeClass] in [bytecodeClasses] iterator as hidden classes, the first class is
+     * the nest host of remaining classes. All defined classes are added to provided [collection].
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return [collection].
+     */
+    fun <C : MutableCollection<in LoadedBytecodeClass>> defineEveryTo(
+        collection: C,
+        bytecodeClasses: Iterator<BytecodeClass>
+    ): C {
+        if (!bytecodeClasses.hasNext()) {
+            throw IllegalArgumentException("Empty 'bytecodeClasses' array")
+        }
+
+        val known = mutableListOf<LoadedBytecodeClass>()
+        var host: MethodHandles.Lookup? = null
+
+        while (bytecodeClasses.hasNext()) {
+            val bytecodeClass = bytecodeClasses.next()
+
+            if (bytecodeClass.declaration !is TypeDeclaration)
+                throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
+
+            val currentHost = host
+            val define = if (currentHost == null) {
+                this.defineLookup(bytecodeClass).also { host = it }.lookupClass()
+            } else {
+                this.defineNestmate(currentHost, bytecodeClass)
+            }
+
+            val outerType = bytecodeClass.declaration.outerType
+            val outerLazy by lazy {
+                known.firstOrNull { outerType != null && (it.bytecodeClass.declaration as Type).`is`(outerType) }
+            }
+
+            val loaded = LoadedBytecodeClass(
+                bytecodeClass,
+                outerType = { outerLazy },
+                loadedClass = define
+            )
+
+            collection.add(loaded)
+            known.add(loaded)
+        }
+
+        return collection
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.classloader
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Class loader which only defines [registered][register] classes when they are first loaded, classes which
+ * are never used (such as inner classes, [switch mappings][com.koresframework.kores.bytecode.util.SwitchOnEnum] and
+ * synthetic accessors) are never defined.
+ *
+ * Class files of registered classes are also provided as [resources][getResourceAsStream]. This class loader is
+ * [parallel capable][ClassLoader.isRegisteredAsParallelCapable].
+ */
+open class LazyCodeClassLoader : ClassLoader {
+
+    constructor() : super()
+    constructor(parent: ClassLoader) : super(parent)
+
+    private val registered = ConcurrentHashMap<String, BytecodeClass>()
+
+    /**
+     * Registers [bytecodeClass] to be defined when it is first loaded.
+     *
+     * @return Binary name of registered class.
+     * @throws IllegalArgumentException If a class with the same name is already registered.
+     */
+    open fun register(bytecodeClass: BytecodeClass): String {
+        val name = (bytecodeClass.declaration as? TypeDeclaration)?.type
+                ?: throw IllegalArgumentException("Non-TypeDeclaration loading is not supported yet. BytecodeClass: $bytecodeClass")
+
+        if (this.registered.putIfAbsent(name, bytecodeClass) != null)
+            throw IllegalArgumentException("Class '$name' is already registered in class loader '$this'.")
+
+        return name
+    }
+
+    /**
+     * Registers every [class][BytecodeClass] of [bytecodeClasses] to be defined when first loaded.
+     */
+    open fun register(bytecodeClasses: Iterable<BytecodeClass>) {
+        bytecodeClasses.forEach { this.register(it) }
+    }
+
+    /**
+     * Registers [classes][BytecodeClass] and inner classes, and loads the first class. Remaining classes are
+     * only defined when loaded.
+     *
+     * @param bytecodeClasses Bytecode class (first element) and inner classes (remaining).
+     * @return First Class.
+     */
+    open fun define(bytecodeClasses: Collection<BytecodeClass>): Class<*> {
+        if (bytecodeClasses.isEmpty()) {
+            throw IllegalArgumentException("Empty 'bytecodeClasses' array")
+        }
+
+        val names = bytecodeClasses.map { this.register(it) }
+
+        return this.loadClass(names.first())
+    }
+
+    /**
+     * Returns whether a class with binary [name] is registered in this class loader.
+     */
+    fun isRegistered(name: String): Boolean = this.registered.containsKey(name)
+
+    override fun findClass(name: String): Class<*> {
+        val bytecodeClass = this.registered[name] ?: throw ClassNotFoundException(name)
+        val bytes = bytecodeClass.rawBytecode
+
+        return this.defineClass(name, bytes, 0, bytes.size)
+    }
+
+    override fun getResourceAsStream(name: String): InputStream? {
+        if (name.endsWith(CLASS_SUFFIX)) {
+            val bytecodeClass = this.registered[name.removeSuffix(CLASS_SUFFIX).replace('/', '.')]
+
+            if (bytecodeClass != null)
+                return ByteArrayInputStream(bytecodeClass.rawBytecode)
+        }
+
+        return super.getResourceAsStream(name)
+    }
+
+    companion object {
+        private const val CLASS_SUFFIX = ".class"
+
+        init {
+            registerAsParallelCapable()
+        }
+    }
+}
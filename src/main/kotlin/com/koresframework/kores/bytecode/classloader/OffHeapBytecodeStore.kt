@@ -0,0 +1,273 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.classloader
+
+import com.koresframework.kores.base.Named
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import com.koresframework.kores.bytecode.BytecodeClassSink
+import java.io.Closeable
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Store of class files kept outside of the Java heap, in direct [ByteBuffer] chunks of [chunkSize] bytes
+ * (classes larger than [chunkSize] receive their own chunk), indexed by binary name.
+ *
+ * Only declarations and the index stay in the heap, so large amounts of generated classes can be kept
+ * to be defined later without increasing garbage collection work. Classes are defined by the
+ * [class loader][OffHeapCodeClassLoader] directly from the off-heap memory, and [bytecodeClass] returns classes
+ * backed by the off-heap memory.
+ *
+ * The [TypeDeclaration] of every stored class is kept reachable from the heap, as it is needed to define the
+ * class and to create [BytecodeClass]es. Declarations are usually much smaller than the class files, but large
+ * declaration trees (such as declarations with big method bodies) keep their whole tree in the heap; store
+ * classes generated from lightweight declarations when heap usage matters.
+ *
+ * Stored classes can not be removed, memory is released when the store is [closed][close] and its chunks are
+ * garbage collected. This store is thread-safe.
+ *
+ * @property chunkSize Size of each off-heap chunk.
+ */
+class OffHeapBytecodeStore @JvmOverloads constructor(val chunkSize: Int = DEFAULT_CHUNK_SIZE) : BytecodeClassSink,
+    Closeable {
+
+    private val index = ConcurrentHashMap<String, Entry>()
+    private val chunks = mutableListOf<ByteBuffer>()
+    private var current: ByteBuffer? = null
+    private var capacity_ = 0L
+    private var used = 0L
+    private var closed = false
+
+    init {
+        require(this.chunkSize > 0) { "chunkSize must be positive: ${this.chunkSize}" }
+    }
+
+    /**
+     * Binary names of stored classes.
+     */
+    val names: Set<String>
+        get() = this.index.keys.toSet()
+
+    /**
+     * Amount of stored classes.
+     */
+    val size: Int
+        get() = this.index.size
+
+    /**
+     * Amount of off-heap bytes used by stored classes.
+     */
+    val usedBytes: Long
+        get() = synchronized(this) { this.used }
+
+    /**
+     * Amount of off-heap bytes allocated.
+     */
+    val capacity: Long
+        get() = synchronized(this) { this.capacity_ }
+
+    /**
+     * Stores [bytecodeClass].
+     */
+    override fun accept(bytecodeClass: BytecodeClass) {
+        this.store(bytecodeClass)
+    }
+
+    /**
+     * Copies bytes of [bytecodeClass] to off-heap memory.
+     *
+     * @return Binary name of stored class.
+     * @throws IllegalArgumentException If a class with the same name is already stored.
+     */
+    fun store(bytecodeClass: BytecodeClass): String {
+        val declaration = bytecodeClass.declaration as? TypeDeclaration
+                ?: throw IllegalArgumentException("Non-TypeDeclaration storing is not supported yet. BytecodeClass: $bytecodeClass")
+        val name = declaration.type
+        val bytes = bytecodeClass.rawBytecode
+
+        synchronized(this) {
+            if (this.closed)
+                throw IllegalStateException("Store is closed.")
+
+            if (this.index.containsKey(name))
+                throw IllegalArgumentException("Class '$name' is already stored in '$this'.")
+
+            val chunk = this.chunkFor(bytes.size)
+            val offset = chunk.position()
+
+            chunk.put(bytes)
+            this.used += bytes.size
+            this.index[name] = Entry(declaration, chunk, offset, bytes.size)
+        }
+
+        return name
+    }
+
+    /**
+     * Stores every [class][BytecodeClass] of [bytecodeClasses].
+     */
+    fun store(bytecodeClasses: Iterable<BytecodeClass>) {
+        bytecodeClasses.forEach { this.store(it) }
+    }
+
+    /**
+     * Returns whether a class with binary [name] is stored.
+     */
+    operator fun contains(name: String): Boolean = this.index.containsKey(name)
+
+    /**
+     * Returns a read-only direct view of bytes of class with binary [name], or `null` if it is not stored.
+     */
+    fun buffer(name: String): ByteBuffer? =
+        this.index[name]?.let { entry ->
+            entry.chunk.duplicate()
+                .limit(entry.offset + entry.length)
+                .position(entry.offset)
+                .slice()
+                .asReadOnlyBuffer()
+        }
+
+    /**
+     * Returns a [BytecodeClass] of stored class with binary [name] backed by the off-heap memory, or `null` if it is
+     * not stored. Bytes are only copied to the heap when [BytecodeClass.bytecode] is requested.
+     */
+    fun bytecodeClass(name: String): BytecodeClass? {
+        val entry = this.index[name] ?: return null
+        val buffer = this.buffer(name) ?: return null
+
+        return BytecodeClass(entry.declaration, buffer)
+    }
+
+    /**
+     * Returns declaration of stored class with binary [name], or `null` if it is not stored.
+     */
+    fun declaration(name: String): Named? = this.index[name]?.declaration
+
+    /**
+     * Creates a class loader which defines classes of this store when they are loaded.
+     */
+    @JvmOverloads
+    fun classLoader(parent: ClassLoader = ClassLoader.getSystemClassLoader()): OffHeapCodeClassLoader =
+        OffHeapCodeClassLoader(this, parent)
+
+    /**
+     * Removes all classes and drops references to off-heap chunks.
+     */
+    override fun close() {
+        synchronized(this) {
+            this.closed = true
+            this.index.clear()
+            this.chunks.clear()
+            this.current = null
+        }
+    }
+
+    private fun chunkFor(length: Int): ByteBuffer {
+        if (length > this.chunkSize)
+            return this.allocate(length)
+
+        val current = this.current
+
+        if (current != null && current.remaining() >= length)
+            return current
+
+        return this.allocate(this.chunkSize).also { this.current = it }
+    }
+
+    private fun allocate(size: Int): ByteBuffer =
+        ByteBuffer.allocateDirect(size).also {
+            this.chunks.add(it)
+            this.capacity_ += size
+        }
+
+    private class Entry(val declaration: TypeDeclaration, val chunk: ByteBuffer, val offset: Int, val length: Int)
+
+    companion object {
+        /**
+         * Default [chunkSize], 4MB.
+         */
+        const val DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024
+    }
+}
+
+/**
+ * Class loader which defines classes of [store] when they are first loaded, copying the bytes directly
+ * from off-heap memory. Class files are also provided as [resources][getResourceAsStream].
+ *
+ * This class loader is [parallel capable][ClassLoader.isRegisteredAsParallelCapable].
+ */
+open class OffHeapCodeClassLoader(val store: OffHeapBytecodeStore, parent: ClassLoader) : ClassLoader(parent) {
+
+    override fun findClass(name: String): Class<*> {
+        val buffer = this.store.buffer(name) ?: throw ClassNotFoundException(name)
+
+        return this.defineClass(name, buffer, null)
+    }
+
+    override fun getResourceAsStream(name: String): InputStream? {
+        if (name.endsWith(CLASS_SUFFIX)) {
+            val buffer = this.store.buffer(name.removeSuffix(CLASS_SUFFIX).replace('/', '.'))
+
+            if (buffer != null)
+                return ByteBufferInputStream(buffer)
+        }
+
+        return super.getResourceAsStream(name)
+    }
+
+    private class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+
+        override fun read(): Int =
+            if (this.buffer.hasRemaining()) this.buffer.get().toInt() and 0xFF else -1
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0)
+                return 0
+
+            if (!this.buffer.hasRemaining())
+                return -1
+
+            val read = minOf(len, this.buffer.remaining())
+            this.buffer.get(b, off, read)
+
+            return read
+        }
+
+        override fun available(): Int = this.buffer.remaining()
+    }
+
+    companion object {
+        private const val CLASS_SUFFIX = ".class"
+
+        init {
+            registerAsParallelCapable()
+        }
+    }
+}
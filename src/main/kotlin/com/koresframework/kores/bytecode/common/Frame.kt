@@ -34,18 +34,66 @@ import java.lang.reflect.Type
 import java.util.*
 
 /**
- * Jvm Frame, this frame contains all variables of parent frame and store variables of current frame.
+ * Jvm Frame, a scoped table of the variables of a method. Index of each variable is its local slot, `double`
+ * and `long` variables are followed by an invisible variable which takes their second slot.
+ *
+ * Scopes are [entered][enterScope] and [exited][exitScope] as a stack, exiting a scope removes all
+ * variables stored since it was entered. Variables are indexed by name, so lookups does not depend on
+ * the amount of variables in the method.
  */
-internal class Frame(
-    val parent: Frame? = null,
-    variables: List<Variable> = emptyList(),
-    val endLabel: Label? = null
-) {
-
-    private val variables: MutableList<Variable> =
-        (parent?.immutableVariableList.orEmpty() + variables).toMutableList()
+internal class Frame(variables: List<Variable> = emptyList()) {
+
+    private val variables = mutableListOf<Variable>()
+    private val slotsByName = HashMap<String, MutableList<Int>>()
+    private val scopes = mutableListOf<Scope>()
     val immutableVariableList: List<Variable> = Collections.unmodifiableList(this.variables)
 
+    init {
+        variables.forEach(this::push)
+    }
+
+    /**
+     * Amount of entered scopes.
+     */
+    val depth: Int
+        get() = this.scopes.size
+
+    /**
+     * End label of current scope, `null` for main scope.
+     */
+    val endLabel: Label?
+        get() = this.scopes.lastOrNull()?.endLabel
+
+    /**
+     * Enters a new scope which ends at [endLabel].
+     */
+    fun enterScope(endLabel: Label) {
+        this.scopes.add(Scope(this.variables.size, endLabel))
+    }
+
+    /**
+     * Exits current scope, calling [removed] with slot and variable of each variable stored in the scope
+     * (in slot order) before removing them.
+     */
+    fun exitScope(removed: (Int, Variable) -> Unit) {
+        val scope = this.scopes.lastOrNull() ?: throw IllegalStateException("Cannot exit from main frame")
+
+        for (i in scope.start until this.variables.size)
+            removed(i, this.variables[i])
+
+        this.scopes.removeAt(this.scopes.lastIndex)
+
+        for (i in this.variables.lastIndex downTo scope.start) {
+            val name = this.variables.removeAt(i).name
+            val slots = this.slotsByName.getValue(name)
+
+            slots.removeAt(slots.lastIndex)
+
+            if (slots.isEmpty())
+                this.slotsByName.remove(name)
+        }
+    }
+
     /**
      * Get variable at stack pos `i`.
      *
@@ -69,7 +117,16 @@ internal class Frame(
      * @return Variable or `null` if not present.
      */
     fun getVarByName(name: String): Variable? {
-        return this.variables.find { `var` -> `var`.isVisible && `var`.name == name }
+        val slots = this.slotsByName[name] ?: return null
+
+        for (slot in slots) {
+            val variable = this.variables[slot]
+
+            if (variable.isVisible)
+                return variable
+        }
+
+        return null
     }
 
     /**
@@ -84,11 +141,16 @@ internal class Frame(
             return this.getVarByName(name)
         }
 
-        return this.variables.find { `var` ->
-            `var`.isVisible && `var`.name == name && `var`.type.`is`(
-                type
-            )
+        val slots = this.slotsByName[name] ?: return null
+
+        for (slot in slots) {
+            val variable = this.variables[slot]
+
+            if (variable.isVisible && variable.type.`is`(type))
+                return variable
         }
+
+        return null
     }
 
     /**
@@ -98,27 +160,19 @@ internal class Frame(
      * @return Position of variable if exists, or [OptionalInt.empty] otherwise.
      */
     fun getVarPos(variable: Variable): OptionalInt {
-        for (i in this.variables.indices.reversed()) {
-            if (variable.isVisible && this.variables[i] == variable)
-                return OptionalInt.of(i)
-        }
+        if (!variable.isVisible)
+            return OptionalInt.empty()
 
-        return OptionalInt.empty()
-    }
+        val slot = this.lastSlotOf(variable, visibleOnly = false)
 
-    /**
-     * Add variable
-     */
-    fun add(variable: Variable) {
-        this.variables.add(variable)
-        this.handle(variable)
+        return if (slot == -1) OptionalInt.empty() else OptionalInt.of(slot)
     }
 
     /**
      * Add variable
      */
-    fun add(pos: Int, variable: Variable) {
-        this.variables.add(pos, variable)
+    fun add(variable: Variable) {
+        this.push(variable)
         this.handle(variable)
     }
 
@@ -130,6 +184,22 @@ internal class Frame(
         if (variable.type.`is`(Types.DOUBLE) || variable.type.`is`(Types.LONG))
             throw IllegalArgumentException("Cannot set variable at pos '$pos' because it is of type Double or Long and it requires a right-move of all other variables.")
 
+        val old = this.variables[pos]
+
+        if (old.name != variable.name) {
+            val oldSlots = this.slotsByName.getValue(old.name)
+
+            oldSlots.remove(pos)
+
+            if (oldSlots.isEmpty())
+                this.slotsByName.remove(old.name)
+
+            val slots = this.slotsByName.getOrPut(variable.name) { mutableListOf() }
+            val insertion = slots.binarySearch(pos)
+
+            slots.add(-(insertion + 1), pos)
+        }
+
         this.variables[pos] = variable
     }
 
@@ -140,7 +210,7 @@ internal class Frame(
      */
     private fun handle(variable: Variable) {
         if (variable.type.`is`(Types.DOUBLE) || variable.type.`is`(Types.LONG))
-            this.variables.add(
+            this.push(
                 variable.copy(
                     name = "#${variable.name}ext_",
                     isTemp = true,
@@ -149,6 +219,28 @@ internal class Frame(
             )
     }
 
+    private fun push(variable: Variable) {
+        this.slotsByName.getOrPut(variable.name) { mutableListOf() }.add(this.variables.size)
+        this.variables.add(variable)
+    }
+
+    /**
+     * Last slot which holds a variable equal to [variable] (and [visible][Variable.isVisible] if [visibleOnly]),
+     * or `-1` if there is no one.
+     */
+    private fun lastSlotOf(variable: Variable, visibleOnly: Boolean = true): Int {
+        val slots = this.slotsByName[variable.name] ?: return -1
+
+        for (i in slots.indices.reversed()) {
+            val stored = this.variables[slots[i]]
+
+            if ((!visibleOnly || stored.isVisible) && stored == variable)
+                return slots[i]
+        }
+
+        return -1
+    }
+
     /**
      * Store a variable in stack "table".
      *
@@ -163,17 +255,14 @@ internal class Frame(
         // normal var: isVisible = true, isTemp = false
 
         val variable = Variable(name, type, startLabel, endLabel ?: this.endLabel)
+        val slot = this.lastSlotOf(variable)
 
-        for (i in this.variables.indices.reversed()) {
-            val variable1 = this.variables[i]
-
-            if (variable1.isVisible && variable1 == variable) {
-                if (variable1.isTemp) {
-                    throw RuntimeException("Cannot store variable named '$name'. Variable already stored!")
-                }
-
-                return OptionalInt.of(i)
+        if (slot != -1) {
+            if (this.variables[slot].isTemp) {
+                throw RuntimeException("Cannot store variable named '$name'. Variable already stored!")
             }
+
+            return OptionalInt.of(slot)
         }
 
         this.add(variable)
@@ -204,14 +293,10 @@ internal class Frame(
         endLabel: Label?
     ): OptionalInt {
         val variable = Variable(name, type, startLabel, endLabel ?: this.endLabel, true)
+        val slot = this.lastSlotOf(variable)
 
-        for (i in variables.indices.reversed()) {
-            val variable_ = this.variables[i]
-
-            if (variable_.isVisible && variable_ == variable) {
-                return OptionalInt.of(i)
-            }
-        }
+        if (slot != -1)
+            return OptionalInt.of(slot)
 
         this.add(variable)
         // ? Last index with synchronized method is good!!!
@@ -245,5 +330,7 @@ internal class Frame(
         return finalName
     }
 
-    fun hasVar(varName: String) = this.variables.any { it.name == varName }
-}
\ No newline at end of file
+    fun hasVar(varName: String) = this.slotsByName.containsKey(varName)
+
+    private class Scope(val start: Int, val endLabel: Label)
+}
@@ -56,27 +56,13 @@ class MethodVisitorHelper constructor(
     private var stackValues = 0
     private var variableHistory = ListHashMap<Int, Variable>()
 
-    private var frame_: Frame? = Frame(null, variables)
+    private var frame_: Frame? = Frame(variables)
 
-    private var frame: Frame
+    private val frame: Frame
         get() = this.frame_ ?: throw IllegalStateException("Visit end")
-        set(value) {
-            this.frame_ = value
-        }
 
     fun enterNewFrame() {
-        val end = Label()
-
-        /*
-                val start = this.frame.parent?.immutableVariableList?.size ?: 0
-                val endSize = this.frame.immutableVariableList.size
-
-                val subList = this.frame.immutableVariableList.subList(start, endSize)
-
-                this.variableHistory.addAll(subList)
-        */
-
-        this.frame = Frame(this.frame, emptyList(), end)
+        this.frame.enterScope(Label())
     }
 
     fun exitFrame() {
@@ -84,25 +70,14 @@ class MethodVisitorHelper constructor(
             methodVisitor.visitLabel(it)
         }
 
-        val start = this.frame.parent?.immutableVariableList?.size ?: 0
-        val endSize = this.frame.immutableVariableList.size
-
-        val subList = this.frame.immutableVariableList.subList(start, endSize)
-
-        subList.forEachIndexed { i, variable ->
-            this.variableHistory.putToList(start + i, variable)
+        this.frame.exitScope { i, variable ->
+            this.variableHistory.putToList(i, variable)
         }
-
-        //this.variableHistory.addAll(subList)
-
-        this.frame = this.frame.parent ?: throw IllegalStateException("Cannot exit from main frame")
     }
 
     private fun exitAllFrames() {
-        var f = this.frame.parent
-        while (f != null) {
+        while (this.frame.depth > 0) {
             exitFrame()
-            f = this.frame.parent
         }
     }
 
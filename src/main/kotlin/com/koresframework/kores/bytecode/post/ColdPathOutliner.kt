@@ -0,0 +1,135 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyResolver
+import org.objectweb.asm.tree.ClassNode
+
+/**
+ * Estimated code size of a method before and after [cold path outlining][ColdPathOutliner].
+ *
+ * @property owner Internal name of the method owner.
+ * @property sizeBefore Estimated code size before outlining, in bytes.
+ * @property sizeAfter Estimated code size after outlining, in bytes.
+ * @property helpers Amount of helper methods created for the method.
+ */
+data class OutlineReport(
+    val owner: String,
+    val name: String,
+    val desc: String,
+    val sizeBefore: Int,
+    val sizeAfter: Int,
+    val helpers: Int
+)
+
+/**
+ * Receives [reports][OutlineReport] of methods processed by [ColdPathOutliner]. Implementations must be
+ * thread-safe to be used with a generator which generates classes concurrently.
+ */
+fun interface OutlineReporter {
+    fun report(report: OutlineReport)
+}
+
+/**
+ * Moves rarely executed code out of methods, so the frequently executed code fits in the inlining
+ * thresholds of HotSpot (`MaxInlineSize` of 35 bytes and `FreqInlineSize` of 325 bytes).
+ *
+ * Cold code is code which ends with a `throw`, such as argument validation and exception construction with
+ * concatenated messages, and code of exception handlers. The largest straight-line part of such code is moved
+ * to a `private static synthetic` helper named `<method>$cold$<n>`: a throw becomes an invocation of the helper,
+ * which returns the exception to throw, followed by the original `athrow`.
+ *
+ * Methods not larger than [minSize] are already inlined and are not processed.
+ *
+ * @property typeHierarchy Hierarchy used to compute types of values passed to helpers, when `null`, the
+ * [default resolver][TypeHierarchyResolver.DEFAULT] is used.
+ * @property reporter Receives the size of every processed method before and after outlining.
+ */
+class ColdPathOutliner @JvmOverloads constructor(
+    val api: Int,
+    val typeHierarchy: TypeHierarchy? = null,
+    val reporter: OutlineReporter? = null,
+    val minSize: Int = MAX_INLINE_SIZE
+) {
+
+    private val hierarchy = typeHierarchy ?: TypeHierarchy(listOf(TypeHierarchyResolver.DEFAULT))
+
+    /**
+     * Moves cold code of methods of [classNode] to helper methods, adding them to [classNode].
+     *
+     * @return Amount of helper methods created.
+     */
+    fun outline(classNode: ClassNode): Int {
+        val helpers = HelperMethods.of(classNode) ?: return 0
+        var created = 0
+
+        for (method in classNode.methods.toList()) {
+            val before = MethodOutliner.codeSize(method.instructions)
+
+            if (before <= this.minSize)
+                continue
+
+            val added = try {
+                val outliner = MethodOutliner(this.api, this.hierarchy, classNode, method)
+
+                helpers.add(outliner, outliner.coldRegions(), "cold").size
+            } catch (e: Exception) {
+                // Analysis failed (unresolvable types, invalid code), the method is written as it is
+                0
+            }
+
+            created += added
+
+            this.reporter?.report(
+                OutlineReport(
+                    classNode.name,
+                    method.name,
+                    method.desc,
+                    before,
+                    MethodOutliner.codeSize(method.instructions),
+                    added
+                )
+            )
+        }
+
+        return created
+    }
+
+    companion object {
+        /**
+         * Default `MaxInlineSize` of HotSpot, methods up to this size are inlined even if they are not hot.
+         */
+        const val MAX_INLINE_SIZE = 35
+
+        /**
+         * Default `FreqInlineSize` of HotSpot, hot methods up to this size are inlined.
+         */
+        const val FREQ_INLINE_SIZE = 325
+    }
+}
@@ -28,25 +28,22 @@
 package com.koresframework.kores.bytecode.post
 
 import org.objectweb.asm.tree.LabelNode
-import org.objectweb.asm.tree.MethodNode
-import org.objectweb.asm.tree.analysis.Analyzer
-import org.objectweb.asm.tree.analysis.BasicInterpreter
 
-object DeadCodeRemover : MethodProcessor {
+object DeadCodeRemover : ChangeTrackingMethodProcessor {
 
-    override fun process(owner: String, methodNode: MethodNode): MethodNode {
-        val analyzer = Analyzer(BasicInterpreter())
+    override fun process(context: MethodContext): Boolean {
+        val methodNode = context.methodNode
         val insns = methodNode.instructions.toArray()
+        var changed = false
 
-        analyzer.analyze(owner, methodNode)
-
-        analyzer.frames.forEachIndexed { index, frame ->
+        context.frames().forEachIndexed { index, frame ->
             if (frame == null && insns[index] !is LabelNode) {
                 methodNode.instructions.remove(insns[index])
+                changed = true
             }
         }
 
-        return methodNode
+        return changed
     }
 
 }
\ No newline at end of file
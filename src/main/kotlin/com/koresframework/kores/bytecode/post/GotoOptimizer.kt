@@ -30,12 +30,12 @@ package com.koresframework.kores.bytecode.post
 import org.objectweb.asm.Opcodes
 import org.objectweb.asm.tree.AbstractInsnNode
 import org.objectweb.asm.tree.JumpInsnNode
-import org.objectweb.asm.tree.MethodNode
 
-object GotoOptimizer : MethodProcessor {
+object GotoOptimizer : ChangeTrackingMethodProcessor {
 
-    override fun process(owner: String, methodNode: MethodNode): MethodNode {
-        val insns = methodNode.instructions
+    override fun process(context: MethodContext): Boolean {
+        val insns = context.methodNode.instructions
+        var changed = false
 
         for (insn in insns) {
             if (insn is JumpInsnNode) {
@@ -55,19 +55,23 @@ object GotoOptimizer : MethodProcessor {
                     }
                 }
 
-                insn.label = label
+                if (insn.label !== label) {
+                    insn.label = label
+                    changed = true
+                }
 
                 if (insn.opcode == Opcodes.GOTO && target != null) {
                     when (target.opcode) {
                         in Opcodes.IRETURN..Opcodes.RETURN, Opcodes.ATHROW -> {
                             insns.set(insn, target.clone(null))
+                            changed = true
                         }
                     }
                 }
             }
         }
 
-        return methodNode
+        return changed
     }
 
 }
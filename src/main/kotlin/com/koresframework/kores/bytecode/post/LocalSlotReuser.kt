@@ -0,0 +1,350 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.FrameNode
+import org.objectweb.asm.tree.IincInsnNode
+import org.objectweb.asm.tree.JumpInsnNode
+import org.objectweb.asm.tree.LabelNode
+import org.objectweb.asm.tree.LocalVariableNode
+import org.objectweb.asm.tree.LookupSwitchInsnNode
+import org.objectweb.asm.tree.MethodNode
+import org.objectweb.asm.tree.TableSwitchInsnNode
+import org.objectweb.asm.tree.VarInsnNode
+import java.util.BitSet
+
+/**
+ * Reassigns local variable slots so variables which are never live at the same time share slots, reducing
+ * `max_locals` of methods with many temporary variables (such as `for-each` iterators and `finally` exceptions),
+ * which otherwise keep their slot until their frame exits.
+ *
+ * Liveness is computed per slot over the control flow graph (including exception handlers), so named variables
+ * share slots after their last use as well as synthetic ones. [Local variable table][MethodNode.localVariables]
+ * entries are shrunk to the instructions where their slot is live, split in one entry per live range, so reused
+ * slots never make the local variable table show the wrong variable. Entries of variables which are never live
+ * keep their range, and their slot is considered occupied for the whole range. `long` and `double` slots are moved
+ * as a pair, parameters and slots used with mixed sizes keep their original position.
+ *
+ * [MethodVisitorHelper][com.koresframework.kores.bytecode.common.MethodVisitorHelper] still assigns a new slot to
+ * each variable while generating, as last uses are only known once the method is generated, slots are reused only
+ * when this processor runs. It is not in the default
+ * [POST_PROCESSORS][com.koresframework.kores.bytecode.POST_PROCESSORS], as it changes the local variable table
+ * seen by debuggers, and it should be added after [DeadCodeRemover], so unreachable stores do not keep slots occupied.
+ */
+object LocalSlotReuser : ChangeTrackingMethodProcessor {
+
+    override fun process(context: MethodContext): Boolean {
+        val method = context.methodNode
+        val insns = method.instructions
+
+        if (insns.size() == 0 || method.visibleLocalVariableAnnotations != null
+            || method.invisibleLocalVariableAnnotations != null
+            || insns.any { it is FrameNode || it.opcode == Opcodes.JSR || it.opcode == Opcodes.RET })
+            return false
+
+        val firstLocal = Type.getArgumentsAndReturnSizes(method.desc).shr(2) -
+                (if (method.access and Opcodes.ACC_STATIC != 0) 1 else 0)
+
+        val slots = Slots(firstLocal)
+
+        insns.forEach { slots.access(it) }
+        method.localVariables?.forEach { slots.declare(it.index, Type.getType(it.desc).size) }
+
+        if (slots.movable.isEmpty)
+            return false
+
+        val liveness = this.liveness(method, firstLocal)
+        val colors = slots.color(this.interference(liveness.occupied))
+
+        if (colors.all { (slot, color) -> slot == color })
+            return false
+
+        insns.forEach {
+            when (it) {
+                is VarInsnNode -> it.`var` = colors[it.`var`] ?: it.`var`
+                is IincInsnNode -> it.`var` = colors[it.`var`] ?: it.`var`
+            }
+        }
+
+        this.split(method, liveness.ranges)
+
+        method.localVariables?.forEach {
+            it.index = colors[it.index] ?: it.index
+        }
+
+        method.maxLocals = maxOf(firstLocal, colors.maxOfOrNull { (slot, color) -> color + slots.size(slot) } ?: 0)
+
+        return true
+    }
+
+    /**
+     * Replaces each local variable table entry in [ranges] with one entry per live range, entries without
+     * any instruction in their live ranges are removed.
+     */
+    private fun split(method: MethodNode, ranges: Map<LocalVariableNode, List<IntRange>>) {
+        val variables = method.localVariables ?: return
+        val nodes = method.instructions.toArray()
+
+        method.localVariables = variables.flatMap { variable ->
+            val live = ranges[variable] ?: return@flatMap listOf(variable)
+
+            live.filter { range -> range.any { nodes[it].opcode != -1 } }.map { range ->
+                val start = LabelNode()
+                val end = LabelNode()
+
+                method.instructions.insertBefore(nodes[range.first], start)
+                method.instructions.insert(nodes[range.last], end)
+
+                LocalVariableNode(variable.name, variable.desc, variable.signature, start, end, variable.index)
+            }
+        }.toMutableList()
+    }
+
+    /**
+     * Computes slots occupied at each instruction (slots live before or after the instruction, or defined by the
+     * instruction) and live ranges of local variable table entries, as instruction indexes where the slot of the
+     * entry is live before the instruction.
+     */
+    private fun liveness(method: MethodNode, firstLocal: Int): Liveness {
+        val insns = method.instructions
+        val size = insns.size()
+        val uses = Array(size) { BitSet() }
+        val defs = Array(size) { BitSet() }
+        val successors = Array(size) { IntArray(0) }
+        val handlers = Array(size) { IntArray(0) }
+
+        for ((i, insn) in insns.withIndex()) {
+            when (insn) {
+                is VarInsnNode -> if (insn.`var` >= firstLocal) {
+                    if (insn.opcode in Opcodes.ISTORE..Opcodes.ASTORE) defs[i].set(insn.`var`)
+                    else uses[i].set(insn.`var`)
+                }
+                is IincInsnNode -> if (insn.`var` >= firstLocal) {
+                    uses[i].set(insn.`var`)
+                    defs[i].set(insn.`var`)
+                }
+            }
+
+            successors[i] = this.successors(insn, i, size, insns::indexOf)
+        }
+
+        method.tryCatchBlocks?.forEach { block ->
+            val handler = insns.indexOf(block.handler)
+
+            for (i in insns.indexOf(block.start) until insns.indexOf(block.end))
+                handlers[i] += handler
+        }
+
+        val liveIn = Array(size) { BitSet() }
+        val liveOut = Array(size) { BitSet() }
+        var changed = true
+
+        while (changed) {
+            changed = false
+
+            for (i in size - 1 downTo 0) {
+                val out = BitSet()
+                successors[i].forEach { out.or(liveIn[it]) }
+
+                val `in` = out.clone() as BitSet
+                `in`.andNot(defs[i])
+                `in`.or(uses[i])
+                handlers[i].forEach { `in`.or(liveIn[it]) }
+
+                if (out != liveOut[i] || `in` != liveIn[i]) {
+                    liveOut[i] = out
+                    liveIn[i] = `in`
+                    changed = true
+                }
+            }
+        }
+
+        val occupied = Array(size) { i ->
+            BitSet().also {
+                it.or(liveIn[i])
+                it.or(liveOut[i])
+                it.or(defs[i])
+            }
+        }
+
+        val ranges = mutableMapOf<LocalVariableNode, List<IntRange>>()
+
+        method.localVariables?.forEach {
+            if (it.index < firstLocal)
+                return@forEach
+
+            val start = insns.indexOf(it.start)
+            val end = insns.indexOf(it.end)
+            val live = mutableListOf<IntRange>()
+            var rangeStart = -1
+
+            for (i in start..end) {
+                if (i < end && liveIn[i][it.index]) {
+                    if (rangeStart == -1) rangeStart = i
+                } else if (rangeStart != -1) {
+                    live += rangeStart until i
+                    rangeStart = -1
+                }
+            }
+
+            if (live.isEmpty()) {
+                for (i in start until end)
+                    occupied[i].set(it.index)
+            } else {
+                ranges[it] = live
+            }
+        }
+
+        return Liveness(occupied, ranges)
+    }
+
+    private class Liveness(val occupied: Array<BitSet>, val ranges: Map<LocalVariableNode, List<IntRange>>)
+
+    private fun successors(insn: AbstractInsnNode, index: Int, size: Int, indexOf: (AbstractInsnNode) -> Int): IntArray {
+        val next = if (index + 1 < size) intArrayOf(index + 1) else IntArray(0)
+
+        return when {
+            insn is JumpInsnNode ->
+                if (insn.opcode == Opcodes.GOTO) intArrayOf(indexOf(insn.label))
+                else next + indexOf(insn.label)
+            insn is TableSwitchInsnNode -> (insn.labels + insn.dflt).map(indexOf).toIntArray()
+            insn is LookupSwitchInsnNode -> (insn.labels + insn.dflt).map(indexOf).toIntArray()
+            insn.opcode in Opcodes.IRETURN..Opcodes.RETURN || insn.opcode == Opcodes.ATHROW -> IntArray(0)
+            else -> next
+        }
+    }
+
+    /**
+     * Computes interference of slots, slots interfere if they are occupied at the same instruction.
+     */
+    private fun interference(occupied: Array<BitSet>): Map<Int, BitSet> {
+        val interference = mutableMapOf<Int, BitSet>()
+
+        for (slots in occupied) {
+            var slot = slots.nextSetBit(0)
+
+            while (slot >= 0) {
+                interference.getOrPut(slot) { BitSet() }.or(slots)
+                slot = slots.nextSetBit(slot + 1)
+            }
+        }
+
+        return interference
+    }
+
+    /**
+     * Slots of a method from `firstLocal`.
+     */
+    private class Slots(val firstLocal: Int) {
+        private val sizes = sortedMapOf<Int, Int>()
+        private val fixed = BitSet()
+        val movable = BitSet()
+
+        fun size(slot: Int): Int = this.sizes[slot] ?: 1
+
+        fun access(insn: AbstractInsnNode) {
+            when (insn) {
+                is VarInsnNode -> this.declare(
+                    insn.`var`,
+                    when (insn.opcode) {
+                        Opcodes.LLOAD, Opcodes.DLOAD, Opcodes.LSTORE, Opcodes.DSTORE -> 2
+                        else -> 1
+                    }
+                )
+                is IincInsnNode -> this.declare(insn.`var`, 1)
+            }
+        }
+
+        fun declare(slot: Int, size: Int) {
+            if (slot < this.firstLocal)
+                return
+
+            val current = this.sizes[slot]
+
+            if (current != null && current != size) {
+                this.sizes[slot] = maxOf(current, size)
+                this.fixed.set(slot)
+            } else {
+                this.sizes[slot] = size
+            }
+
+            this.movable.set(slot)
+        }
+
+        /**
+         * Assigns a slot to each slot, slots are assigned in order to the first position which does not overlap
+         * interfering slots already assigned. Fixed slots are assigned first, to their original position.
+         */
+        fun color(interference: Map<Int, BitSet>): Map<Int, Int> {
+            // Slots overlapping the second half of a long or double slot keep their position
+            for ((slot, size) in this.sizes) {
+                if (size == 2 && this.sizes.containsKey(slot + 1)) {
+                    this.fixed.set(slot)
+                    this.fixed.set(slot + 1)
+                }
+            }
+
+            this.movable.andNot(this.fixed)
+
+            val colors = linkedMapOf<Int, Int>()
+
+            for (slot in this.sizes.keys) {
+                if (this.fixed[slot])
+                    colors[slot] = slot
+            }
+
+            for (slot in this.sizes.keys) {
+                if (!this.movable[slot])
+                    continue
+
+                val size = this.size(slot)
+                val interfering = interference[slot] ?: BitSet()
+                var color = this.firstLocal
+
+                while (true) {
+                    val overlap = colors.entries.any { (other, otherColor) ->
+                        other != slot && interfering[other]
+                                && color < otherColor + this.size(other) && otherColor < color + size
+                    }
+
+                    if (!overlap)
+                        break
+
+                    ++color
+                }
+
+                colors[slot] = color
+            }
+
+            return colors
+        }
+    }
+}
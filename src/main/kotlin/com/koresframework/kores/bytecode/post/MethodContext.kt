@@ -0,0 +1,100 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import org.objectweb.asm.tree.MethodNode
+import org.objectweb.asm.tree.analysis.Analyzer
+import org.objectweb.asm.tree.analysis.BasicInterpreter
+import org.objectweb.asm.tree.analysis.BasicValue
+import org.objectweb.asm.tree.analysis.Frame
+
+/**
+ * Method being post-processed, shared between [processors][MethodProcessor] of the same method.
+ *
+ * Analysis results are computed on demand and cached until a processor reports that it
+ * [changed][ChangeTrackingMethodProcessor.process] the method.
+ *
+ * @property owner Internal name of the method owner.
+ */
+class MethodContext @JvmOverloads constructor(
+    val owner: String,
+    methodNode: MethodNode,
+    frames: Array<Frame<BasicValue>?>? = null
+) {
+
+    /**
+     * Method being processed, replacing the method invalidates analysis results.
+     */
+    var methodNode: MethodNode = methodNode
+        set(value) {
+            if (field !== value) {
+                field = value
+                this.invalidate()
+            }
+        }
+
+    private var frames: Array<Frame<BasicValue>?>? = frames
+
+    /**
+     * Frames of [methodNode] computed with [BasicInterpreter], indexed by instruction index. Frames of unreachable
+     * instructions are `null`.
+     */
+    fun frames(): Array<Frame<BasicValue>?> =
+        this.frames ?: Analyzer(BasicInterpreter()).analyze(this.owner, this.methodNode).also {
+            this.frames = it
+        }
+
+    /**
+     * Invalidates cached analysis results, must be called when [methodNode] is changed.
+     */
+    fun invalidate() {
+        this.frames = null
+    }
+
+    /**
+     * Applies [processor] to this method.
+     *
+     * @return Whether [processor] changed the method or not. Processors which do not track changes are
+     * assumed to always change the method.
+     */
+    fun apply(processor: MethodProcessor): Boolean {
+        if (processor is ChangeTrackingMethodProcessor) {
+            val changed = processor.process(this)
+
+            if (changed)
+                this.invalidate()
+
+            return changed
+        }
+
+        this.methodNode = processor.process(this.owner, this.methodNode)
+        this.invalidate()
+
+        return true
+    }
+}
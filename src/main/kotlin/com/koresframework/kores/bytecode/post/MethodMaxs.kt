@@ -0,0 +1,221 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import org.objectweb.asm.ConstantDynamic
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.FieldInsnNode
+import org.objectweb.asm.tree.IincInsnNode
+import org.objectweb.asm.tree.IntInsnNode
+import org.objectweb.asm.tree.InvokeDynamicInsnNode
+import org.objectweb.asm.tree.JumpInsnNode
+import org.objectweb.asm.tree.LdcInsnNode
+import org.objectweb.asm.tree.LookupSwitchInsnNode
+import org.objectweb.asm.tree.MethodInsnNode
+import org.objectweb.asm.tree.MethodNode
+import org.objectweb.asm.tree.MultiANewArrayInsnNode
+import org.objectweb.asm.tree.TableSwitchInsnNode
+import org.objectweb.asm.tree.TypeInsnNode
+import org.objectweb.asm.tree.VarInsnNode
+import org.objectweb.asm.tree.analysis.Analyzer
+import org.objectweb.asm.tree.analysis.BasicInterpreter
+import org.objectweb.asm.tree.analysis.BasicValue
+import org.objectweb.asm.tree.analysis.Frame
+
+/**
+ * Computes `maxLocals` and `maxStack` of methods which were not generated by a [ClassWriter][org.objectweb.asm.ClassWriter],
+ * such as methods generated directly into [MethodNode]s, so they can be [analyzed][Analyzer].
+ *
+ * `maxStack` is computed in a single pass over the control flow graph, from the stack effect of each instruction.
+ * Computed values are upper bounds, exact values are computed when the class is written. Frames computed with
+ * these values are returned to be reused by [MethodContext].
+ */
+internal object MethodMaxs {
+
+    fun compute(owner: String, methodNode: MethodNode): Array<Frame<BasicValue>?>? {
+        if (methodNode.instructions.size() == 0)
+            return null
+
+        methodNode.maxLocals = this.computeMaxLocals(methodNode)
+        methodNode.maxStack = this.computeMaxStack(methodNode)
+
+        return Analyzer(BasicInterpreter()).analyze(owner, methodNode)
+    }
+
+    /**
+     * Computes the maximum height of the operand stack, in slots, by propagating the height before each instruction
+     * to its successors. Exception handlers start with the exception on the stack.
+     */
+    private fun computeMaxStack(methodNode: MethodNode): Int {
+        val insns = methodNode.instructions
+        val heights = IntArray(insns.size()) { -1 }
+        val pending = ArrayDeque<Int>()
+        var maxStack = if (methodNode.tryCatchBlocks.isEmpty()) 0 else 1
+
+        fun reach(index: Int, height: Int) {
+            if (index < heights.size && heights[index] < 0) {
+                heights[index] = height
+                pending.add(index)
+            }
+        }
+
+        reach(0, 0)
+        methodNode.tryCatchBlocks.forEach { reach(insns.indexOf(it.handler), 1) }
+
+        while (pending.isNotEmpty()) {
+            val index = pending.removeFirst()
+            val insn = insns[index]
+            val height = heights[index] + this.stackEffect(insn)
+
+            if (height > maxStack)
+                maxStack = height
+
+            when (insn) {
+                is JumpInsnNode -> {
+                    reach(insns.indexOf(insn.label), height)
+
+                    // The return address pushed by JSR is consumed by the subroutine
+                    if (insn.opcode != Opcodes.GOTO)
+                        reach(index + 1, if (insn.opcode == Opcodes.JSR) height - 1 else height)
+                }
+                is TableSwitchInsnNode -> {
+                    reach(insns.indexOf(insn.dflt), height)
+                    insn.labels.forEach { reach(insns.indexOf(it), height) }
+                }
+                is LookupSwitchInsnNode -> {
+                    reach(insns.indexOf(insn.dflt), height)
+                    insn.labels.forEach { reach(insns.indexOf(it), height) }
+                }
+                else -> when (insn.opcode) {
+                    in Opcodes.IRETURN..Opcodes.RETURN, Opcodes.ATHROW, Opcodes.RET -> Unit
+                    else -> reach(index + 1, height)
+                }
+            }
+        }
+
+        return maxStack
+    }
+
+    /**
+     * Change of the operand stack height, in slots, caused by [insn].
+     */
+    private fun stackEffect(insn: AbstractInsnNode): Int = when (insn) {
+        is VarInsnNode -> when (insn.opcode) {
+            Opcodes.LLOAD, Opcodes.DLOAD -> 2
+            Opcodes.LSTORE, Opcodes.DSTORE -> -2
+            in Opcodes.ISTORE..Opcodes.ASTORE -> -1
+            Opcodes.RET -> 0
+            else -> 1
+        }
+        is IincInsnNode -> 0
+        is IntInsnNode -> if (insn.opcode == Opcodes.NEWARRAY) 0 else 1
+        is TypeInsnNode -> if (insn.opcode == Opcodes.NEW) 1 else 0
+        is LdcInsnNode -> when (val cst = insn.cst) {
+            is Long, is Double -> 2
+            is ConstantDynamic -> cst.size
+            else -> 1
+        }
+        is FieldInsnNode -> Type.getType(insn.desc).size.let {
+            when (insn.opcode) {
+                Opcodes.GETSTATIC -> it
+                Opcodes.PUTSTATIC -> -it
+                Opcodes.GETFIELD -> it - 1
+                else -> -it - 1
+            }
+        }
+        is MethodInsnNode -> Type.getArgumentsAndReturnSizes(insn.desc).let {
+            // Argument sizes include the receiver
+            (it and 3) - (it shr 2) + if (insn.opcode == Opcodes.INVOKESTATIC) 1 else 0
+        }
+        is InvokeDynamicInsnNode -> Type.getArgumentsAndReturnSizes(insn.desc).let { (it and 3) - (it shr 2) + 1 }
+        is MultiANewArrayInsnNode -> 1 - insn.dims
+        is JumpInsnNode -> when (insn.opcode) {
+            in Opcodes.IFEQ..Opcodes.IFLE, Opcodes.IFNULL, Opcodes.IFNONNULL -> -1
+            in Opcodes.IF_ICMPEQ..Opcodes.IF_ACMPNE -> -2
+            Opcodes.JSR -> 1
+            else -> 0
+        }
+        is TableSwitchInsnNode, is LookupSwitchInsnNode -> -1
+        else -> this.insnStackEffect(insn.opcode)
+    }
+
+    /**
+     * Change of the operand stack height, in slots, caused by instructions without operands (and by labels,
+     * line numbers and frames, which have no effect).
+     */
+    private fun insnStackEffect(opcode: Int): Int = when (opcode) {
+        Opcodes.ACONST_NULL, in Opcodes.ICONST_M1..Opcodes.ICONST_5, in Opcodes.FCONST_0..Opcodes.FCONST_2 -> 1
+        Opcodes.LCONST_0, Opcodes.LCONST_1, Opcodes.DCONST_0, Opcodes.DCONST_1 -> 2
+        Opcodes.LALOAD, Opcodes.DALOAD -> 0
+        in Opcodes.IALOAD..Opcodes.SALOAD -> -1
+        Opcodes.LASTORE, Opcodes.DASTORE -> -4
+        in Opcodes.IASTORE..Opcodes.SASTORE -> -3
+        Opcodes.POP -> -1
+        Opcodes.POP2 -> -2
+        Opcodes.DUP, Opcodes.DUP_X1, Opcodes.DUP_X2 -> 1
+        Opcodes.DUP2, Opcodes.DUP2_X1, Opcodes.DUP2_X2 -> 2
+        // Arithmetic instructions are ordered as int, long, float, double
+        in Opcodes.IADD..Opcodes.DREM -> if ((opcode - Opcodes.IADD) % 2 == 0) -1 else -2
+        in Opcodes.ISHL..Opcodes.LUSHR -> -1
+        Opcodes.IAND, Opcodes.IOR, Opcodes.IXOR -> -1
+        Opcodes.LAND, Opcodes.LOR, Opcodes.LXOR -> -2
+        Opcodes.I2L, Opcodes.I2D, Opcodes.F2L, Opcodes.F2D -> 1
+        Opcodes.L2I, Opcodes.L2F, Opcodes.D2I, Opcodes.D2F -> -1
+        Opcodes.LCMP, Opcodes.DCMPL, Opcodes.DCMPG -> -3
+        Opcodes.FCMPL, Opcodes.FCMPG -> -1
+        Opcodes.IRETURN, Opcodes.FRETURN, Opcodes.ARETURN, Opcodes.ATHROW,
+        Opcodes.MONITORENTER, Opcodes.MONITOREXIT -> -1
+        Opcodes.LRETURN, Opcodes.DRETURN -> -2
+        else -> 0
+    }
+
+    private fun computeMaxLocals(methodNode: MethodNode): Int {
+        var maxLocals = Type.getArgumentsAndReturnSizes(methodNode.desc) shr 2
+
+        if (methodNode.access and Opcodes.ACC_STATIC != 0)
+            --maxLocals
+
+        methodNode.instructions.forEach {
+            val end = when (it) {
+                is VarInsnNode -> it.`var` + when (it.opcode) {
+                    Opcodes.LLOAD, Opcodes.DLOAD, Opcodes.LSTORE, Opcodes.DSTORE -> 2
+                    else -> 1
+                }
+                is IincInsnNode -> it.`var` + 1
+                else -> 0
+            }
+
+            if (end > maxLocals)
+                maxLocals = end
+        }
+
+        return maxLocals
+    }
+}
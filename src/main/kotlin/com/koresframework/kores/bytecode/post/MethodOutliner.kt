@@ -0,0 +1,679 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.ClassNode
+import org.objectweb.asm.tree.FieldInsnNode
+import org.objectweb.asm.tree.FrameNode
+import org.objectweb.asm.tree.IincInsnNode
+import org.objectweb.asm.tree.InsnList
+import org.objectweb.asm.tree.InsnNode
+import org.objectweb.asm.tree.IntInsnNode
+import org.objectweb.asm.tree.InvokeDynamicInsnNode
+import org.objectweb.asm.tree.JumpInsnNode
+import org.objectweb.asm.tree.LabelNode
+import org.objectweb.asm.tree.LdcInsnNode
+import org.objectweb.asm.tree.LineNumberNode
+import org.objectweb.asm.tree.LookupSwitchInsnNode
+import org.objectweb.asm.tree.MethodInsnNode
+import org.objectweb.asm.tree.MethodNode
+import org.objectweb.asm.tree.MultiANewArrayInsnNode
+import org.objectweb.asm.tree.TableSwitchInsnNode
+import org.objectweb.asm.tree.TypeInsnNode
+import org.objectweb.asm.tree.VarInsnNode
+import org.objectweb.asm.tree.analysis.Analyzer
+import org.objectweb.asm.tree.analysis.BasicInterpreter
+import org.objectweb.asm.tree.analysis.BasicValue
+import org.objectweb.asm.tree.analysis.Frame
+import org.objectweb.asm.tree.analysis.Interpreter
+
+/**
+ * Run of instructions from [start] (inclusive) to [end] (exclusive) moved to a helper method.
+ *
+ * @property stackInputs Types of operand stack values consumed by the run, from the bottom to the top.
+ * @property localInputs Slots and types of locals read by the run.
+ * @property localOutput Slot of local written by the run and read after it.
+ * @property result Type of value produced by the run, returned by the helper.
+ */
+internal class Region(
+    val start: Int,
+    val end: Int,
+    val stackInputs: List<Type>,
+    val localInputs: List<Pair<Int, Type>>,
+    val localOutput: Int?,
+    val result: Type?,
+    val saving: Int
+)
+
+/**
+ * Finds [regions][Region] of [method] which can be moved to `static` helper methods and moves them.
+ *
+ * Regions are straight-line runs of instructions without jumps, jump targets, exception handler boundaries,
+ * returns and throws. Values of the operand stack and locals used by the region are passed as arguments and
+ * the single value the region produces (a value left on the stack, or a local read after the region) is
+ * returned by the helper. Uninitialized objects are never passed to helpers, so `super`/`this` constructor
+ * invocations stay in the constructor, and neither are writes to final fields of the class, which the JVM
+ * only allows in initializers.
+ *
+ * Types of values are computed with [hierarchy], analysis fails if [method] is not valid.
+ */
+internal class MethodOutliner(
+    private val api: Int,
+    hierarchy: TypeHierarchy,
+    private val owner: ClassNode,
+    val method: MethodNode
+) {
+    private val insns: Array<AbstractInsnNode> = method.instructions.toArray()
+    private val frames: Array<Frame<BasicValue>?> =
+        OutlineAnalyzer(OutlineInterpreter(api, hierarchy, method.name == "<init>")).analyze(owner.name, method)
+
+    private val finalFields = owner.fields.filter { it.access and Opcodes.ACC_FINAL != 0 }.mapTo(mutableSetOf()) { it.name }
+    private val handlers = method.tryCatchBlocks.mapTo(mutableSetOf<AbstractInsnNode>()) { it.handler }
+    private val barrierLabels = mutableSetOf<LabelNode>()
+    private val covered = BooleanArray(insns.size)
+    private val reads = mutableMapOf<Int, Int>()
+
+    init {
+        insns.forEach {
+            when (it) {
+                is JumpInsnNode -> barrierLabels += it.label
+                is TableSwitchInsnNode -> {
+                    barrierLabels += it.dflt
+                    barrierLabels += it.labels
+                }
+                is LookupSwitchInsnNode -> {
+                    barrierLabels += it.dflt
+                    barrierLabels += it.labels
+                }
+                is VarInsnNode -> if (it.opcode !in Opcodes.ISTORE..Opcodes.ASTORE) this.read(it.`var`)
+                is IincInsnNode -> this.read(it.`var`)
+            }
+        }
+
+        method.tryCatchBlocks.forEach {
+            barrierLabels += it.start
+            barrierLabels += it.end
+            barrierLabels += it.handler
+
+            val end = method.instructions.indexOf(it.end)
+
+            for (i in method.instructions.indexOf(it.start) until end)
+                covered[i] = true
+        }
+    }
+
+    private fun read(slot: Int) {
+        reads[slot] = (reads[slot] ?: 0) + 1
+    }
+
+    /**
+     * Straight-line runs of instructions, which can be moved to helpers.
+     */
+    private val runs: List<IntRange> by lazy {
+        val runs = mutableListOf<IntRange>()
+        var start = 0
+
+        for (i in 0..insns.size) {
+            if (i == insns.size || this.isBarrier(i)) {
+                if (i > start)
+                    runs += start until i
+
+                start = i + 1
+            }
+        }
+
+        runs
+    }
+
+    /**
+     * Finds regions of at most [chunkSize] bytes which save at least [needed] bytes, starting from the largest
+     * straight-line runs.
+     */
+    fun splitRegions(needed: Int, chunkSize: Int): List<Region> {
+        val regions = mutableListOf<Region>()
+        var saved = 0
+
+        for (run in runs.sortedByDescending { codeSize(insns, it) }) {
+            var from = run.first
+
+            while (from <= run.last && saved < needed) {
+                val scan = Scan(from, MIN_SAVING)
+                var best: Region? = null
+
+                for (i in from..run.last) {
+                    scan.step(i)
+
+                    if (scan.size > chunkSize)
+                        break
+
+                    scan.region(i + 1)?.let { best = it }
+                }
+
+                val region = best
+
+                if (region == null) {
+                    ++from
+                } else {
+                    regions += region
+                    saved += region.saving
+                    from = region.end
+                }
+            }
+
+            if (saved >= needed)
+                break
+        }
+
+        return regions
+    }
+
+    /**
+     * Finds rarely executed regions: the largest region of each straight-line run which ends with a `throw` and
+     * of each straight-line run which starts an exception handler.
+     */
+    fun coldRegions(): List<Region> =
+        this.runs.filter { insns.getOrNull(it.last + 1)?.opcode == Opcodes.ATHROW || insns.getOrNull(it.first - 1) in handlers }
+            .mapNotNull { run ->
+                (run.first..run.last).asSequence().mapNotNull { from ->
+                    val scan = Scan(from, 1)
+
+                    for (i in from..run.last)
+                        scan.step(i)
+
+                    scan.region(run.last + 1)
+                }.firstOrNull()
+            }
+
+    private fun isBarrier(index: Int): Boolean {
+        if (frames[index] == null)
+            return true
+
+        val insn = insns[index]
+
+        return when (insn) {
+            is LabelNode -> insn in barrierLabels
+            is FrameNode, is JumpInsnNode, is TableSwitchInsnNode, is LookupSwitchInsnNode -> true
+            is FieldInsnNode -> (insn.opcode == Opcodes.PUTFIELD || insn.opcode == Opcodes.PUTSTATIC)
+                    && insn.owner == owner.name && insn.name in finalFields
+            is MethodInsnNode -> insn.opcode == Opcodes.INVOKESPECIAL && insn.name != "<init>"
+                    && insn.owner != owner.name
+            is VarInsnNode -> insn.opcode == Opcodes.RET
+            else -> insn.opcode in Opcodes.IRETURN..Opcodes.RETURN
+                    || insn.opcode == Opcodes.ATHROW
+                    || insn.opcode == Opcodes.JSR
+                    || insn.opcode == Opcodes.MONITORENTER
+                    || insn.opcode == Opcodes.MONITOREXIT
+        }
+    }
+
+    /**
+     * Creates a helper method named [name] with a copy of the instructions of [region]. The method is only
+     * changed when the result is [applied][Outlined.apply].
+     */
+    fun outline(region: Region, name: String, access: Int, isInterface: Boolean): Outlined {
+        val desc = Type.getMethodDescriptor(
+            region.result ?: Type.VOID_TYPE,
+            *(region.stackInputs + region.localInputs.map { it.second }).toTypedArray()
+        )
+        val helper = MethodNode(api, access, name, desc, null, null)
+        val code = helper.instructions
+
+        // Locals of the region are shifted after the parameters of the helper
+        val base = (region.stackInputs + region.localInputs.map { it.second }).sumOf { it.size }
+        var param = region.stackInputs.sumOf { it.size }
+
+        region.localInputs.forEach { (slot, type) ->
+            code.add(VarInsnNode(type.getOpcode(Opcodes.ILOAD), param))
+            code.add(VarInsnNode(type.getOpcode(Opcodes.ISTORE), base + slot))
+            param += type.size
+        }
+
+        param = 0
+
+        region.stackInputs.forEach {
+            code.add(VarInsnNode(it.getOpcode(Opcodes.ILOAD), param))
+            param += it.size
+        }
+
+        val call = InsnList()
+
+        region.localInputs.forEach { (slot, type) ->
+            call.add(VarInsnNode(type.getOpcode(Opcodes.ILOAD), slot))
+        }
+
+        call.add(MethodInsnNode(Opcodes.INVOKESTATIC, owner.name, name, desc, isInterface))
+
+        if (region.localOutput != null)
+            call.add(VarInsnNode(region.result!!.getOpcode(Opcodes.ISTORE), region.localOutput))
+
+        // Labels and line numbers are kept, they may be referenced by the method
+        val moved = (region.start until region.end).map { insns[it] }.filter { it.opcode >= 0 }
+
+        // Moved instructions have no label operands, as regions are straight-line code
+        moved.forEach {
+            val copy = it.clone(emptyMap())
+
+            when (copy) {
+                is VarInsnNode -> copy.`var` += base
+                is IincInsnNode -> copy.`var` += base
+            }
+
+            code.add(copy)
+        }
+
+        val result = region.result
+
+        when {
+            result == null -> code.add(InsnNode(Opcodes.RETURN))
+            region.localOutput != null -> {
+                code.add(VarInsnNode(result.getOpcode(Opcodes.ILOAD), base + region.localOutput))
+                code.add(InsnNode(result.getOpcode(Opcodes.IRETURN)))
+            }
+            else -> code.add(InsnNode(result.getOpcode(Opcodes.IRETURN)))
+        }
+
+        helper.maxLocals = base + method.maxLocals
+        helper.maxStack = method.maxStack + region.stackInputs.size
+
+        return Outlined(helper, call, moved)
+    }
+
+    /**
+     * Helper method created for a region, and the invocation which replaces the [moved] instructions.
+     */
+    inner class Outlined(val helper: MethodNode, private val call: InsnList, private val moved: List<AbstractInsnNode>) {
+
+        /**
+         * Replaces the moved instructions of the method with the invocation of [helper].
+         */
+        fun apply() {
+            method.instructions.insertBefore(moved.first(), call)
+            moved.forEach { method.instructions.remove(it) }
+        }
+    }
+
+    /**
+     * Incremental state of a region starting at [start], extended one instruction at a time with [step].
+     */
+    private inner class Scan(val start: Int, private val minSaving: Int) {
+        private val startFrame = frames[start]!!
+        private var minHeight = startFrame.stackSize
+        private val inputs = linkedSetOf<Int>()
+        private val written = linkedSetOf<Int>()
+        private val regionReads = mutableMapOf<Int, Int>()
+
+        var size = 0
+            private set
+
+        fun step(index: Int) {
+            val insn = insns[index]
+            val frame = frames[index]!!
+
+            this.size += insnSize(insn)
+
+            when (insn) {
+                is VarInsnNode ->
+                    if (insn.opcode in Opcodes.ISTORE..Opcodes.ASTORE) this.written += insn.`var`
+                    else this.read(insn.`var`)
+                is IincInsnNode -> {
+                    this.read(insn.`var`)
+                    this.written += insn.`var`
+                }
+            }
+
+            if (insn.opcode >= 0)
+                this.minHeight = minOf(this.minHeight, frame.stackSize - consumed(insn, frame))
+        }
+
+        private fun read(slot: Int) {
+            this.regionReads[slot] = (this.regionReads[slot] ?: 0) + 1
+
+            if (slot !in this.written)
+                this.inputs += slot
+        }
+
+        /**
+         * Creates the region ending at [end], or returns `null` if instructions until [end] can not be moved
+         * or moving them would not save code.
+         */
+        fun region(end: Int): Region? {
+            val endFrame = frames.getOrNull(end) ?: return null
+            val stackOutputs = endFrame.stackSize - this.minHeight
+
+            if (stackOutputs > 1)
+                return null
+
+            val localOutputs = this.written.filter { (reads[it] ?: 0) > (this.regionReads[it] ?: 0) }
+
+            if (localOutputs.size + stackOutputs > 1)
+                return null
+
+            // Exception handlers would not see locals written before the exception
+            if (localOutputs.isNotEmpty() && covered[this.start])
+                return null
+
+            val result = when {
+                stackOutputs == 1 -> endFrame.getStack(endFrame.stackSize - 1)
+                localOutputs.isNotEmpty() -> endFrame.getLocal(localOutputs.single())
+                else -> null
+            }
+
+            val stackInputs = (this.minHeight until startFrame.stackSize).map { startFrame.getStack(it) }
+            val localInputs = this.inputs.map { it to startFrame.getLocal(it) }
+
+            val values = stackInputs + localInputs.map { it.second } + listOfNotNull(result)
+
+            if (values.any { !isTransferable(it) })
+                return null
+
+            if ((stackInputs + localInputs.map { it.second }).sumOf { it.size } > MAX_PARAMETERS)
+                return null
+
+            val saving = this.size - (3 + (localInputs.size + localOutputs.size) * 2)
+
+            if (saving < this.minSaving)
+                return null
+
+            return Region(
+                this.start,
+                end,
+                stackInputs.map { it.type },
+                localInputs.map { (slot, value) -> slot to value.type },
+                localOutputs.singleOrNull(),
+                result?.type,
+                saving
+            )
+        }
+    }
+
+    companion object {
+        /**
+         * Maximum size of helpers, HotSpot does not compile methods larger than this (`HugeMethodLimit`).
+         */
+        const val MAX_HELPER_SIZE = 8000
+
+        private const val MIN_SAVING = 16
+        private const val MAX_PARAMETERS = 255
+
+        // Values only known to be null have no type to be declared with
+        private fun isTransferable(value: BasicValue): Boolean =
+            value !is UninitializedValue && value.type != null && value.type.sort != Type.VOID
+                    && value.type != BasicInterpreter.NULL_TYPE
+
+        /**
+         * Estimated code size of [insns], instructions are assumed to be written in their largest form.
+         */
+        fun codeSize(insns: InsnList): Int = insns.sumOf { insnSize(it) }
+
+        private fun codeSize(insns: Array<AbstractInsnNode>, range: IntRange): Int = range.sumOf { insnSize(insns[it]) }
+
+        private fun insnSize(insn: AbstractInsnNode): Int = when (insn) {
+            is LabelNode, is LineNumberNode, is FrameNode -> 0
+            is VarInsnNode -> if (insn.`var` > 255) 4 else if (insn.`var` < 4 && insn.opcode != Opcodes.RET) 1 else 2
+            is IincInsnNode -> if (insn.`var` > 255 || insn.incr !in Byte.MIN_VALUE..Byte.MAX_VALUE) 6 else 3
+            is IntInsnNode -> if (insn.opcode == Opcodes.SIPUSH) 3 else 2
+            is TableSwitchInsnNode -> 4 + 12 + 4 * insn.labels.size
+            is LookupSwitchInsnNode -> 4 + 8 + 8 * insn.labels.size
+            is InvokeDynamicInsnNode -> 5
+            is MethodInsnNode -> if (insn.opcode == Opcodes.INVOKEINTERFACE) 5 else 3
+            is JumpInsnNode -> if (insn.opcode == Opcodes.GOTO || insn.opcode == Opcodes.JSR) 5 else 8
+            is MultiANewArrayInsnNode -> 4
+            is LdcInsnNode, is TypeInsnNode, is FieldInsnNode -> 3
+            else -> 1
+        }
+
+        /**
+         * Amount of operand stack values consumed by [insn] executed with [frame].
+         */
+        private fun consumed(insn: AbstractInsnNode, frame: Frame<BasicValue>): Int {
+            fun size(depth: Int) = frame.getStack(frame.stackSize - 1 - depth).size
+
+            return when (insn) {
+                is MethodInsnNode -> Type.getArgumentTypes(insn.desc).size +
+                        if (insn.opcode == Opcodes.INVOKESTATIC) 0 else 1
+                is InvokeDynamicInsnNode -> Type.getArgumentTypes(insn.desc).size
+                is MultiANewArrayInsnNode -> insn.dims
+                is FieldInsnNode -> when (insn.opcode) {
+                    Opcodes.GETSTATIC -> 0
+                    Opcodes.PUTFIELD -> 2
+                    else -> 1
+                }
+                is VarInsnNode -> if (insn.opcode in Opcodes.ISTORE..Opcodes.ASTORE) 1 else 0
+                is TypeInsnNode -> if (insn.opcode == Opcodes.NEW) 0 else 1
+                is IntInsnNode -> if (insn.opcode == Opcodes.NEWARRAY) 1 else 0
+                is LdcInsnNode, is IincInsnNode -> 0
+                else -> when (insn.opcode) {
+                    in Opcodes.IALOAD..Opcodes.SALOAD -> 2
+                    in Opcodes.IASTORE..Opcodes.SASTORE -> 3
+                    Opcodes.POP, Opcodes.DUP -> 1
+                    Opcodes.POP2, Opcodes.DUP2 -> if (size(0) == 2) 1 else 2
+                    Opcodes.DUP_X1, Opcodes.SWAP -> 2
+                    Opcodes.DUP_X2 -> if (size(1) == 2) 2 else 3
+                    Opcodes.DUP2_X1 -> if (size(0) == 2) 2 else 3
+                    Opcodes.DUP2_X2 -> when {
+                        size(0) == 2 -> if (size(1) == 2) 2 else 3
+                        else -> if (size(2) == 2) 3 else 4
+                    }
+                    in Opcodes.IADD..Opcodes.DREM, in Opcodes.ISHL..Opcodes.LXOR,
+                    in Opcodes.LCMP..Opcodes.DCMPG -> 2
+                    in Opcodes.INEG..Opcodes.DNEG, in Opcodes.I2L..Opcodes.I2S, Opcodes.ARRAYLENGTH -> 1
+                    else -> 0
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Helper methods created for a class, named `<method>$<kind>$<n>`.
+ */
+internal class HelperMethods private constructor(
+    private val classNode: ClassNode,
+    private val access: Int,
+    private val isInterface: Boolean
+) {
+    private val names = classNode.methods.mapTo(mutableSetOf()) { it.name }
+
+    /**
+     * Moves [regions] of the method of [outliner] to new helpers and adds them to the class. Helpers are
+     * created before the method is changed, so if any region fails to be outlined, the method is left as it is.
+     *
+     * @return Helpers added to the class.
+     */
+    fun add(outliner: MethodOutliner, regions: List<Region>, kind: String): List<MethodNode> {
+        if (regions.isEmpty())
+            return emptyList()
+
+        val baseName = outliner.method.name.removePrefix("<").removeSuffix(">")
+        val names = this.names.toMutableSet()
+
+        val outlined = regions.map { region ->
+            var n = 0
+
+            while ("$baseName\$$kind\$$n" in names)
+                ++n
+
+            val name = "$baseName\$$kind\$$n"
+            names += name
+
+            outliner.outline(region, name, this.access, this.isInterface)
+        }
+
+        outlined.forEach { it.apply() }
+
+        this.names.addAll(names)
+
+        return outlined.map { it.helper }.also { this.classNode.methods.addAll(it) }
+    }
+
+    companion object {
+        /**
+         * Creates the helpers of [classNode], or returns `null` if [classNode] can not have static helpers.
+         */
+        fun of(classNode: ClassNode): HelperMethods? {
+            val version = classNode.version and 0xFFFF
+            val isInterface = classNode.access and Opcodes.ACC_INTERFACE != 0
+
+            // Interfaces only have static methods since Java 8 and private methods since Java 9
+            if (isInterface && version < Opcodes.V1_8)
+                return null
+
+            val access = Opcodes.ACC_STATIC or Opcodes.ACC_SYNTHETIC or
+                    if (isInterface && version < Opcodes.V9) Opcodes.ACC_PUBLIC else Opcodes.ACC_PRIVATE
+
+            return HelperMethods(classNode, access, isInterface)
+        }
+    }
+}
+
+/**
+ * Value created by `new` (or `this` of a constructor) which was not initialized yet.
+ */
+private class UninitializedValue(type: Type, val insn: AbstractInsnNode?) : BasicValue(type) {
+    override fun equals(other: Any?): Boolean =
+        other === this || (other is UninitializedValue && other.insn === this.insn && other.type == this.type)
+
+    override fun hashCode(): Int = super.hashCode() * 31 + System.identityHashCode(this.insn)
+}
+
+/**
+ * Interpreter which tracks exact reference types, merged with the [hierarchy], and uninitialized values,
+ * so values can be passed to helper methods.
+ */
+private class OutlineInterpreter(
+    api: Int,
+    private val hierarchy: TypeHierarchy,
+    private val constructor: Boolean
+) : BasicInterpreter(api) {
+
+    override fun newValue(type: Type?): BasicValue? =
+        if (type != null && (type.sort == Type.OBJECT || type.sort == Type.ARRAY)) BasicValue(type)
+        else super.newValue(type)
+
+    override fun newParameterValue(isInstanceMethod: Boolean, local: Int, type: Type): BasicValue =
+        if (this.constructor && isInstanceMethod && local == 0) UninitializedValue(type, null)
+        else super.newParameterValue(isInstanceMethod, local, type)
+
+    override fun newOperation(insn: AbstractInsnNode): BasicValue =
+        if (insn.opcode == Opcodes.NEW) UninitializedValue(Type.getObjectType((insn as TypeInsnNode).desc), insn)
+        else super.newOperation(insn)
+
+    override fun binaryOperation(insn: AbstractInsnNode, value1: BasicValue, value2: BasicValue): BasicValue? =
+        if (insn.opcode == Opcodes.AALOAD) {
+            if (value1.type.sort == Type.ARRAY) this.newValue(Type.getType(value1.type.descriptor.substring(1)))
+            else this.newValue(OBJECT_TYPE)
+        } else super.binaryOperation(insn, value1, value2)
+
+    override fun merge(value1: BasicValue, value2: BasicValue): BasicValue {
+        if (value1 == value2 && value2 == value1)
+            return value1
+
+        if (value1 is UninitializedValue || value2 is UninitializedValue)
+            return BasicValue.UNINITIALIZED_VALUE
+
+        val type1 = value1.type
+        val type2 = value2.type
+
+        if (!isReference(type1) || !isReference(type2))
+            return BasicValue.UNINITIALIZED_VALUE
+
+        if (type1 == NULL_TYPE)
+            return value2
+
+        if (type2 == NULL_TYPE)
+            return value1
+
+        return BasicValue(this.commonType(type1, type2))
+    }
+
+    private fun isReference(type: Type?) =
+        type != null && (type.sort == Type.OBJECT || type.sort == Type.ARRAY)
+
+    private fun commonType(type1: Type, type2: Type): Type {
+        if (type1.sort == Type.OBJECT && type2.sort == Type.OBJECT)
+            return Type.getObjectType(this.commonSuperClass(type1.internalName, type2.internalName))
+
+        if (type1.sort == Type.ARRAY && type2.sort == Type.ARRAY && type1.dimensions == type2.dimensions
+            && type1.elementType.sort == Type.OBJECT && type2.elementType.sort == Type.OBJECT) {
+            val element = this.commonSuperClass(type1.elementType.internalName, type2.elementType.internalName)
+
+            return Type.getType("[".repeat(type1.dimensions) + Type.getObjectType(element).descriptor)
+        }
+
+        return OBJECT_TYPE
+    }
+
+    private fun commonSuperClass(type1: String, type2: String): String =
+        try {
+            this.hierarchy.commonSuperClass(type1, type2)
+        } catch (e: TypeNotPresentException) {
+            OBJECT_TYPE.internalName
+        }
+
+    companion object {
+        private val OBJECT_TYPE = Type.getObjectType("java/lang/Object")
+    }
+}
+
+/**
+ * Frame which replaces copies of [UninitializedValue] with initialized values after the constructor invocation.
+ */
+private class OutlineFrame : Frame<BasicValue> {
+    constructor(numLocals: Int, maxStack: Int) : super(numLocals, maxStack)
+    constructor(frame: Frame<out BasicValue>) : super(frame)
+
+    override fun execute(insn: AbstractInsnNode, interpreter: Interpreter<BasicValue>) {
+        val receiver = if (insn is MethodInsnNode && insn.opcode == Opcodes.INVOKESPECIAL && insn.name == "<init>")
+            this.getStack(this.stackSize - 1 - Type.getArgumentTypes(insn.desc).size) as? UninitializedValue
+        else null
+
+        super.execute(insn, interpreter)
+
+        if (receiver != null) {
+            val initialized = BasicValue(receiver.type)
+
+            for (i in 0 until this.locals)
+                if (this.getLocal(i) == receiver)
+                    this.setLocal(i, initialized)
+
+            for (i in 0 until this.stackSize)
+                if (this.getStack(i) == receiver)
+                    this.setStack(i, initialized)
+        }
+    }
+}
+
+private class OutlineAnalyzer(interpreter: Interpreter<BasicValue>) : Analyzer<BasicValue>(interpreter) {
+    override fun newFrame(numLocals: Int, numStack: Int): Frame<BasicValue> = OutlineFrame(numLocals, numStack)
+
+    override fun newFrame(frame: Frame<out BasicValue>): Frame<BasicValue> = OutlineFrame(frame)
+}
@@ -30,7 +30,11 @@ package com.koresframework.kores.bytecode.post
 import org.objectweb.asm.tree.MethodNode
 
 /**
- * Method processor called to execute optimizations
+ * Method processor called to execute optimizations.
+ *
+ * Processors which do not implement [ChangeTrackingMethodProcessor] are assumed to change the method every
+ * time they are called, so they always run [POST_PROCESSING_LOOPS][com.koresframework.kores.bytecode.POST_PROCESSING_LOOPS]
+ * times and discard cached analysis results.
  */
 interface MethodProcessor {
     /**
@@ -39,4 +43,20 @@ interface MethodProcessor {
      * @return Optimized [methodNode].
      */
     fun process(owner: String, methodNode: MethodNode): MethodNode
-}
\ No newline at end of file
+}
+/**
+ * Method processor which reports whether it changed the method, so post-processing stops when no processor changes
+ * the method and [analysis results][MethodContext.frames] are reused while the method is not changed.
+ */
+interface ChangeTrackingMethodProcessor : MethodProcessor {
+
+    /**
+     * Called to execute optimizations on [method of context][MethodContext.methodNode].
+     *
+     * @return Whether the method was changed or not.
+     */
+    fun process(context: MethodContext): Boolean
+
+    override fun process(owner: String, methodNode: MethodNode): MethodNode =
+        MethodContext(owner, methodNode).also { this.process(it) }.methodNode
+}
@@ -0,0 +1,101 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.post
+
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyResolver
+import org.objectweb.asm.tree.ClassNode
+
+/**
+ * Splits methods whose code is larger than [threshold] bytes, such as `<clinit>` of classes with many static
+ * field initializers, which would otherwise fail to be written with a
+ * [MethodTooLargeException][org.objectweb.asm.MethodTooLargeException].
+ *
+ * Straight-line runs of instructions (without jumps, jump targets, exception handler boundaries, returns and
+ * throws) are moved to `private static synthetic` helper methods named `<method>$split$<n>`. Values of the
+ * operand stack and locals used by the run are passed as arguments and the single value the run produces
+ * (a value left on the stack, or a local read after the run) is returned by the helper. Runs are moved from
+ * the largest straight-line blocks first, and only until the method is estimated to fit in [threshold].
+ *
+ * Writes to final fields of the class and `super`/`this` constructor invocations are never moved, as the JVM
+ * only allows them in the original initializer. Methods which could not be split enough are left as they are.
+ * Methods which could not be analyzed are left as they are too, unless they are larger than [MAX_CODE_SIZE], in which
+ * case the analysis failure is thrown, as the method could never be written.
+ *
+ * @property typeHierarchy Hierarchy used to compute types of values passed to helpers, when `null`, the
+ * [default resolver][TypeHierarchyResolver.DEFAULT] is used.
+ */
+class MethodSplitter @JvmOverloads constructor(
+    val api: Int,
+    val threshold: Int = MAX_CODE_SIZE,
+    val typeHierarchy: TypeHierarchy? = null
+) {
+
+    private val hierarchy = typeHierarchy ?: TypeHierarchy(listOf(TypeHierarchyResolver.DEFAULT))
+
+    /**
+     * Splits methods of [classNode] larger than [threshold], adding helper methods to [classNode].
+     *
+     * @return Amount of helper methods created.
+     */
+    fun split(classNode: ClassNode): Int {
+        val helpers = HelperMethods.of(classNode) ?: return 0
+        var created = 0
+
+        for (method in classNode.methods.toList()) {
+            val size = MethodOutliner.codeSize(method.instructions)
+
+            if (size <= this.threshold)
+                continue
+
+            created += try {
+                val outliner = MethodOutliner(this.api, this.hierarchy, classNode, method)
+                val regions = outliner.splitRegions(size - this.threshold, minOf(MethodOutliner.MAX_HELPER_SIZE, this.threshold))
+
+                helpers.add(outliner, regions, "split").size
+            } catch (e: Exception) {
+                // Analysis failed (unresolvable types, invalid code), methods which can be written are written
+                // as they are, methods which can not would fail later without the reason
+                if (size > MAX_CODE_SIZE)
+                    throw RuntimeException("An exception occurred during splitting of method " +
+                            "'${method.name}${method.desc}' of class '${classNode.name}', which is too large to be written!", e)
+
+                0
+            }
+        }
+
+        return created
+    }
+
+    companion object {
+        /**
+         * Maximum size of the code of a method, as specified by the JVM.
+         */
+        const val MAX_CODE_SIZE = 65535
+    }
+}
@@ -27,40 +27,153 @@
  */
 package com.koresframework.kores.bytecode.post
 
+import com.koresframework.kores.bytecode.util.asm.KoresClassWriter
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
 import org.objectweb.asm.ClassReader
 import org.objectweb.asm.ClassWriter
 import org.objectweb.asm.tree.ClassNode
 import org.objectweb.asm.tree.MethodNode
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
 
-class Processor(val api: Int, val processors: List<MethodProcessor>, val addTimes: Int) :
-    PostProcessor {
+/**
+ * Runs [processors] over every method of a class, sharing [analysis results][MethodContext] between processors
+ * of the same method.
+ *
+ * @property typeHierarchy Hierarchy used to compute frames, when `null`, classes are loaded by ASM to compute frames.
+ * @property executor Executor to process methods in parallel, when `null`, methods are processed sequentially.
+ * [processors] must be thread-safe to be used with an executor.
+ * @property parallelThreshold Minimum amount of methods of a class to process its methods with [executor].
+ * @property splitter Splitter of methods too large to be written, only applied to [classes generated into the tree][process],
+ * which are also generated when the pipeline is not fused but splitting is enabled.
+ * @property outliner Outliner of cold code, applied after [processors].
+ */
+class Processor @JvmOverloads constructor(
+    val api: Int,
+    val processors: List<MethodProcessor>,
+    val addTimes: Int,
+    val typeHierarchy: TypeHierarchy? = null,
+    val executor: Executor? = null,
+    val parallelThreshold: Int = 0,
+    val splitter: MethodSplitter? = null,
+    val outliner: ColdPathOutliner? = null
+) : PostProcessor {
 
     override fun process(classBytes: ByteArray): ByteArray {
         val cr = ClassReader(classBytes)
         val cn = ClassNode(api)
         cr.accept(cn, ClassReader.SKIP_FRAMES)
 
-        val methods = cn.methods.map { m ->
-            m as MethodNode
-
-            if (addTimes > 0) {
-                (1..addTimes).fold(m) { _, _ ->
-                    processors.fold(m) { lm, p ->
-                        p.process(
-                            cn.name,
-                            lm
-                        )
-                    }
+        this.processMethods(cn) { MethodContext(cn.name, it) }
+        this.outline(cn)
+
+        return this.write(cn)
+    }
+
+    /**
+     * Process [classNode] generated directly into the tree (see [FUSED_PIPELINE][com.koresframework.kores.bytecode.FUSED_PIPELINE]),
+     * computing frames and writing the class only once. Methods of [classNode] do not need to have
+     * `maxStack` and `maxLocals` computed.
+     *
+     * If processors fail or frames could not be computed, the error is thrown wrapped in an exception which names
+     * the class, a class with partially processed methods or without frames is never written.
+     *
+     * Cold code is moved by [outliner] and methods too large to be written are split by [splitter] after processing,
+     * each pass is applied independently of the other.
+     */
+    fun process(classNode: ClassNode): ByteArray {
+        try {
+            this.processMethods(classNode) {
+                MethodContext(classNode.name, it, MethodMaxs.compute(classNode.name, it))
+            }
+        } catch (e: Exception) {
+            throw RuntimeException("An exception occurred during post-processing of class '${classNode.name}'!", e)
+        }
+
+        this.outline(classNode)
+
+        try {
+            this.splitter?.split(classNode)
+        } catch (e: Exception) {
+            throw RuntimeException("An exception occurred during method splitting of class '${classNode.name}'!", e)
+        }
+
+        return try {
+            this.write(classNode)
+        } catch (e: Exception) {
+            throw RuntimeException("An exception occurred during frame computation of class '${classNode.name}'!", e)
+        }
+    }
+
+    /**
+     * Moves cold code of [cn] with [outliner]. Outlining only affects performance, so failures are reported
+     * and remaining methods are written as they are. Methods are outlined atomically, a failure never leaves
+     * invocations of helpers which were not added to the class.
+     */
+    private fun outline(cn: ClassNode) {
+        try {
+            this.outliner?.outline(cn)
+        } catch (e: Exception) {
+            e.printStackTrace()
+        }
+    }
+
+    /**
+     * Processes every method of [cn] with the [context][MethodContext] created by [context], in parallel if
+     * [executor] is present and [cn] has at least [parallelThreshold] methods. Methods are kept in
+     * the original order.
+     */
+    private fun processMethods(cn: ClassNode, context: (MethodNode) -> MethodContext) {
+        val executor = this.executor
+
+        val methods = if (executor != null && cn.methods.size >= this.parallelThreshold) {
+            val tasks = cn.methods.map {
+                CompletableFuture.supplyAsync({ this.processMethod(context(it)) }, executor)
+            }
+
+            tasks.map {
+                try {
+                    it.join()
+                } catch (e: CompletionException) {
+                    throw e.cause ?: e
                 }
-            } else {
-                processors.fold(m) { lm, p -> p.process(cn.name, lm) }
             }
-        }.toList()
+        } else {
+            cn.methods.map { this.processMethod(context(it)) }
+        }
 
         cn.methods.clear()
 
         cn.methods.addAll(methods)
+    }
+
+    /**
+     * Runs [processors] over the method of [context] until no processor changes the method, or until [addTimes]
+     * passes were run (at least one pass is always run).
+     */
+    private fun processMethod(context: MethodContext): MethodNode {
+        val passes = maxOf(addTimes, 1)
+
+        for (pass in 1..passes) {
+            var changed = false
+
+            processors.forEach {
+                if (context.apply(it))
+                    changed = true
+            }
+
+            if (!changed)
+                break
+        }
+
+        return context.methodNode
+    }
+
+    private fun write(cn: ClassNode): ByteArray {
+        val cw = if (this.typeHierarchy != null) KoresClassWriter(ClassWriter.COMPUTE_FRAMES, this.typeHierarchy)
+        else ClassWriter(ClassWriter.COMPUTE_FRAMES)
 
-        return ClassWriter(ClassWriter.COMPUTE_FRAMES).also { cn.accept(it) }.toByteArray()
+        return cw.also { cn.accept(it) }.toByteArray()
     }
-}
\ No newline at end of file
+}
@@ -31,16 +31,21 @@ import com.koresframework.kores.*
 import com.koresframework.kores.base.*
 import com.koresframework.kores.base.Annotation
 import com.koresframework.kores.bytecode.*
+import com.koresframework.kores.bytecode.cache.BytecodeGenerationCache
+import com.koresframework.kores.bytecode.cache.StructuralHash
 import com.koresframework.kores.bytecode.exception.ClassCheckException
 import com.koresframework.kores.bytecode.extra.Dup
 import com.koresframework.kores.bytecode.extra.Pop
 import com.koresframework.kores.bytecode.post.Processor
 import com.koresframework.kores.bytecode.processor.processors.*
 import com.koresframework.kores.bytecode.util.ASM_API
+import com.koresframework.kores.bytecode.util.asm.DeclarationTypeHierarchyResolver
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
 import com.koresframework.kores.common.Stack
 import com.koresframework.kores.literal.Literal
 import com.koresframework.kores.literal.Literals
 import com.koresframework.kores.processor.AbstractProcessorManager
+import com.koresframework.kores.processor.Processor as KoresProcessor
 import com.koresframework.kores.processor.ValidatorManager
 import com.koresframework.kores.processor.VoidValidatorManager
 import com.github.jonathanxd.iutils.data.TypedData
@@ -48,6 +53,11 @@ import com.github.jonathanxd.iutils.option.Options
 import org.objectweb.asm.ClassReader
 import org.objectweb.asm.tree.ClassNode
 import org.objectweb.asm.util.CheckClassAdapter
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
 
 class BytecodeGenerator @JvmOverloads constructor(
     val sourceFile: (Named) -> String = {
@@ -60,7 +70,43 @@ class BytecodeGenerator @JvmOverloads constructor(
 ) //CodeAPI Instructions
     : AbstractProcessorManager<List<com.koresframework.kores.bytecode.BytecodeClass>>() {
 
-    override val options: Options = Options()
+    private val mutableOptions = Options()
+
+    @Volatile
+    private var frozenOptions: Options? = null
+
+    /**
+     * Processors resolved after the generator was [frozen][freeze], indexed by the processed type. Processor
+     * resolution ([getProcessorOf]) must depend only on the processed type, the part and data of the first
+     * resolution of a type are not part of the key.
+     */
+    private val frozenProcessors = ConcurrentHashMap<Class<*>, KoresProcessor<*>>()
+
+    /**
+     * Generator options. After [freeze] this is a snapshot taken at the time of the freeze.
+     */
+    override val options: Options
+        get() = this.frozenOptions ?: this.mutableOptions
+
+    /**
+     * Cache of generated [type declarations][TypeDeclaration], when set, [process] returns classes cached for
+     * declarations with the same structure and options instead of generating them again.
+     *
+     * Cannot be changed after the generator is [frozen][freeze].
+     */
+    var cache: BytecodeGenerationCache? = null
+        set(value) {
+            if (this.isFrozen)
+                throw IllegalStateException("Cannot change the cache of a frozen generator.")
+
+            field = value
+        }
+
+    /**
+     * Whether this generator was [frozen][freeze] or not.
+     */
+    val isFrozen: Boolean
+        get() = this.frozenOptions != null
 
     override val validatorManager: ValidatorManager = VoidValidatorManager
 
@@ -182,6 +228,42 @@ class BytecodeGenerator @JvmOverloads constructor(
         )
     }
 
+    /**
+     * Freezes this generator configuration: [options] is replaced with a [snapshot] of current options and
+     * the processor lookup is cached. A frozen generator is safe to share between threads and may serve
+     * concurrent [process] calls.
+     *
+     * Processors must be registered before freezing, [registering][registerProcessor] after freezing throws
+     * [IllegalStateException]. [options] must not be changed after freezing, changes to the [Options] instance
+     * used before freezing are not reflected in the generator. The snapshot has every option set before
+     * freezing, including options which are not bytecode options.
+     *
+     * @return This generator.
+     */
+    fun freeze(): BytecodeGenerator {
+        if (this.frozenOptions == null) {
+            synchronized(this) {
+                if (this.frozenOptions == null)
+                    this.frozenOptions = this.mutableOptions.snapshot()
+            }
+        }
+
+        return this
+    }
+
+    /**
+     * Registers [processor] of [type].
+     *
+     * @throws IllegalStateException If this generator is [frozen][freeze], as processors resolved before would
+     * still be served.
+     */
+    override fun <T> registerProcessor(processor: KoresProcessor<T>, type: Class<T>) {
+        if (this.isFrozen)
+            throw IllegalStateException("Cannot register processors in a frozen generator.")
+
+        super.registerProcessor(processor, type)
+    }
+
     // Will not be called because here we use void validator.
     override fun printFailMessage(message: String) {
     }
@@ -195,14 +277,89 @@ class BytecodeGenerator @JvmOverloads constructor(
         return data
     }
 
-    override fun process(part: Any): List<com.koresframework.kores.bytecode.BytecodeClass> {
-        return super.process(LineProcessor.visitLineICT(part, this))
+    override fun process(part: Any): List<com.koresframework.kores.bytecode.BytecodeClass> =
+        this.generate(part) {}
+
+    /**
+     * Generates [part] using [cache] if present. [init] is called with the data of the generation before
+     * processors are called.
+     */
+    private inline fun generate(
+        part: Any,
+        init: (TypedData) -> Unit
+    ): List<com.koresframework.kores.bytecode.BytecodeClass> {
+        val cache = this.cache
+
+        val key = if (cache != null && part is TypeDeclaration) StructuralHash.of(part, this.options, this.sourceFile(part))
+        else null
+
+        if (cache != null && key != null && part is TypeDeclaration) {
+            cache.get(key, part)?.let {
+                return it
+            }
+
+            return this.generateUncached(part, init).also {
+                cache.put(key, part, it)
+            }
+        }
+
+        return this.generateUncached(part, init)
+    }
+
+    private inline fun generateUncached(
+        part: Any,
+        init: (TypedData) -> Unit
+    ): List<com.koresframework.kores.bytecode.BytecodeClass> {
+        val transformed = LineProcessor.visitLineICT(part, this)
+        val data = this.createData()
+
+        init(data)
+
+        return this.process(transformed.javaClass, transformed, data)
+    }
+
+    /**
+     * Generates every declaration of [declarations] in parallel using [executor].
+     *
+     * Each declaration is processed with its own [TypedData], so declarations must be independent top-level
+     * declarations (inner types are generated together with their outer type). [options] must not be changed
+     * while the generation is running.
+     *
+     * Declarations of the batch are known by the [type hierarchy][TYPE_HIERARCHY] of every generation, so frames
+     * involving other declarations of the batch are computed without loading classes.
+     *
+     * @param declarations Declarations to generate.
+     * @param executor Executor to run generation tasks on.
+     * @return Generated classes of each declaration, in the same order as [declarations].
+     */
+    @JvmOverloads
+    fun processAll(
+        declarations: Collection<TypeDeclaration>,
+        executor: Executor = ForkJoinPool.commonPool()
+    ): List<List<com.koresframework.kores.bytecode.BytecodeClass>> {
+        val batchResolver = DeclarationTypeHierarchyResolver(declarations)
+        val tasks = declarations.map { declaration ->
+            CompletableFuture.supplyAsync({
+                this.generate(declaration) {
+                    BATCH_HIERARCHY_RESOLVER.set(it, batchResolver)
+                }
+            }, executor)
+        }
+
+        return tasks.map {
+            try {
+                it.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+        }
     }
 
     override fun <T> process(type: Class<out T>, part: T, data: TypedData): List<com.koresframework.kores.bytecode.BytecodeClass> {
         LineProcessor.visitLineIC(this, data)
 
-        val processor = getProcessorOf(type, part, data)
+        val processor = if (this.isFrozen) this.getFrozenProcessorOf(type, part, data)
+        else getProcessorOf(type, part, data)
 
         processor.process(part, data, this)
         processor.endProcess(part, data, this)
@@ -210,27 +367,39 @@ class BytecodeGenerator @JvmOverloads constructor(
         return getFinalValue(data)
     }
 
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> getFrozenProcessorOf(type: Class<out T>, part: T, data: TypedData): KoresProcessor<T> =
+        this.frozenProcessors.getOrPut(type) { getProcessorOf(type, part, data) } as KoresProcessor<T>
+
+    /**
+     * Generates [part] emitting each generated class to [sink] as soon as it is finished, instead of
+     * accumulating all classes until the generation of [part] ends.
+     *
+     * Post-processing and [checking][CHECK] are applied to each class before it is emitted.
+     *
+     * @param part Part to generate.
+     * @param sink Sink to receive generated classes.
+     */
+    fun process(part: Any, sink: BytecodeClassSink) {
+        this.generateUncached(part) { data ->
+            BYTECODE_CLASS_SINK.set(data, BytecodeClassSink {
+                val bytecodeClass = this.postProcess(it, TYPE_HIERARCHY.getOrNull(data.mainData))
+
+                this.check(listOf(bytecodeClass))
+
+                sink.accept(bytecodeClass)
+            })
+        }
+    }
+
     // Called by version above.
     override fun getFinalValue(data: TypedData): List<com.koresframework.kores.bytecode.BytecodeClass> {
         val classes = BYTECODE_CLASS_LIST.getOrNull(data) ?: mutableListOf()
 
-        val checkClasses = if (this.options[POST_PROCESSING]) {
-            classes.map {
-                com.koresframework.kores.bytecode.BytecodeClass(
-                    it.declaration,
-                    try {
-                        Processor(
-                            ASM_API,
-                            this.options[POST_PROCESSORS],
-                            this.options[POST_PROCESSING_LOOPS]
-                        )
-                            .process(it.bytecode)
-                    } catch (e: Exception) {
-                        e.printStackTrace()
-                        it.bytecode
-                    }
-                )
-            }
+        val checkClasses = if (this.options[POST_PROCESSING] && !this.options.isFusedPipeline()) {
+            val typeHierarchy = TYPE_HIERARCHY.getOrNull(data.mainData)
+
+            classes.map { this.postProcess(it, typeHierarchy) }
         } else classes
 
         if (checkClasses.isNotEmpty() && this.options.get(CHECK))
@@ -239,11 +408,39 @@ class BytecodeGenerator @JvmOverloads constructor(
         return checkClasses
     }
 
+    private fun postProcess(
+        bytecodeClass: com.koresframework.kores.bytecode.BytecodeClass,
+        typeHierarchy: TypeHierarchy?
+    ): com.koresframework.kores.bytecode.BytecodeClass {
+        // Fused pipeline post-processes classes during generation
+        if (!this.options[POST_PROCESSING] || this.options.isFusedPipeline())
+            return bytecodeClass
+
+        return com.koresframework.kores.bytecode.BytecodeClass(
+            bytecodeClass.declaration,
+            try {
+                Processor(
+                    ASM_API,
+                    this.options[POST_PROCESSORS],
+                    this.options[POST_PROCESSING_LOOPS],
+                    typeHierarchy,
+                    this.options[POST_PROCESSING_EXECUTOR],
+                    this.options[POST_PROCESSING_PARALLEL_THRESHOLD],
+                    outliner = this.options.coldPathOutliner(typeHierarchy)
+                )
+                    .process(bytecodeClass.rawBytecode)
+            } catch (e: Exception) {
+                e.printStackTrace()
+                bytecodeClass.rawBytecode
+            }
+        )
+    }
+
     private fun check(classes: List<com.koresframework.kores.bytecode.BytecodeClass>) {
         if (this.options[CHECK]) {
             if (classes.isNotEmpty()) {
                 classes.forEach {
-                    val bytecode = it.bytecode
+                    val bytecode = it.rawBytecode
                     if (bytecode.isNotEmpty()) {
                         try {
                             ClassReader(bytecode).accept(CheckClassAdapter(ClassNode(), true), 0)
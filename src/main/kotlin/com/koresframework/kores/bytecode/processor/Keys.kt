@@ -31,10 +31,17 @@ import com.koresframework.kores.KoresElement
 import com.koresframework.kores.Instruction
 import com.koresframework.kores.Instructions
 import com.koresframework.kores.base.*
+import com.koresframework.kores.bytecode.BytecodeClassSink
+import com.koresframework.kores.bytecode.TYPE_HIERARCHY_RESOLVER
 import com.koresframework.kores.bytecode.common.Flow
 import com.koresframework.kores.bytecode.common.MethodVisitorHelper
 import com.koresframework.kores.bytecode.common.Timed
+import com.koresframework.kores.bytecode.common.Variable
+import com.koresframework.kores.bytecode.util.InsnUtil
 import com.koresframework.kores.bytecode.util.AnnotationVisitorCapable
+import com.koresframework.kores.bytecode.util.asm.DeclarationTypeHierarchyResolver
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyResolver
 import com.koresframework.kores.common.FieldRef
 import com.koresframework.kores.factory.invoke
 import com.koresframework.kores.processor.ProcessorManager
@@ -43,8 +50,11 @@ import com.github.jonathanxd.iutils.data.TypedData
 import com.github.jonathanxd.iutils.kt.containsKey
 import com.github.jonathanxd.iutils.kt.require
 import com.github.jonathanxd.iutils.kt.typedKeyOf
+import com.github.jonathanxd.iutils.option.Options
 import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.Label
+import org.objectweb.asm.Opcodes
+import java.lang.reflect.Type
 import java.time.Instant
 
 /**
@@ -106,6 +116,17 @@ val FLOWS = typedKeyOf<MutableList<Flow>>("CODE_FLOWS")
 // MVData
 val METHOD_VISITOR = typedKeyOf<MethodVisitorHelper>("METHOD_VISITOR_DATA")
 
+/**
+ * Return type of the method being generated.
+ */
+val METHOD_RETURN_TYPE = typedKeyOf<Type>("METHOD_RETURN_TYPE")
+
+/**
+ * Variables declared without a value in the method being generated, finally blocks are always inlined while
+ * one of them is in scope (see [SharedFinally]).
+ */
+val UNINITIALIZED_VARIABLES = typedKeyOf<MutableSet<Variable>>("UNINITIALIZED_VARIABLES")
+
 val C_LINE = typedKeyOf<MutableList<CLine>>("CURRENT_LINE")
 
 data class CLine(val line: Int, val label: Label)
@@ -113,6 +134,55 @@ data class CLine(val line: Int, val label: Label)
 // List<BytecodeClass>
 val BYTECODE_CLASS_LIST = typedKeyOf<MutableList<com.koresframework.kores.bytecode.BytecodeClass>>("BYTECODE_CLASS_LIST")
 
+/**
+ * When present, generated classes are emitted to this sink instead of being stored in [BYTECODE_CLASS_LIST].
+ */
+val BYTECODE_CLASS_SINK = typedKeyOf<BytecodeClassSink>("BYTECODE_CLASS_SINK")
+
+/**
+ * Emits [bytecodeClass] to [BYTECODE_CLASS_SINK] of [main data][TypedData.mainData], or inserts it in
+ * [BYTECODE_CLASS_LIST] at [index] (or at the end if [index] is `null`) if there is no sink.
+ */
+fun TypedData.emitBytecodeClass(bytecodeClass: com.koresframework.kores.bytecode.BytecodeClass, index: Int? = null) {
+    val sink = BYTECODE_CLASS_SINK.getOrNull(this.mainData)
+
+    if (sink != null) {
+        sink.accept(bytecodeClass)
+    } else {
+        val list = BYTECODE_CLASS_LIST.getOrSet(this.mainData, mutableListOf())
+
+        if (index != null)
+            list.add(index, bytecodeClass)
+        else
+            list.add(bytecodeClass)
+    }
+}
+
+/**
+ * Resolver of declarations generated in the same batch (see [BytecodeGenerator.processAll]).
+ */
+val BATCH_HIERARCHY_RESOLVER = typedKeyOf<TypeHierarchyResolver>("BATCH_HIERARCHY_RESOLVER")
+
+/**
+ * Type hierarchy of current generation, used to compute frames.
+ */
+val TYPE_HIERARCHY = typedKeyOf<TypeHierarchy>("TYPE_HIERARCHY")
+
+/**
+ * Gets the [TypeHierarchy] of current generation, or creates one for [root] type declaration.
+ * The hierarchy resolves the [batch declarations][BATCH_HIERARCHY_RESOLVER] (or [root] declaration tree if there
+ * is no batch) and then uses [TYPE_HIERARCHY_RESOLVER].
+ */
+fun TypedData.typeHierarchy(root: TypeDeclaration, options: Options): TypeHierarchy =
+    TYPE_HIERARCHY.getOrNull(this.mainData) ?: TypeHierarchy(
+        listOf(
+            BATCH_HIERARCHY_RESOLVER.getOrNull(this.mainData) ?: DeclarationTypeHierarchyResolver(listOf(root)),
+            options[TYPE_HIERARCHY_RESOLVER]
+        )
+    ).also {
+        TYPE_HIERARCHY.set(this.mainData, it)
+    }
+
 val CLASS_VERSION = typedKeyOf<Int>("CLASS_VERSION")
 
 val INDIFY_STRING_CONCATENATION = typedKeyOf<Boolean>("INDIFY_STRING_CONCATENATION")
@@ -159,7 +229,11 @@ data class LineBuf(val visited: Boolean, val line: Int)
 
 val TRY_BLOCK_DATA = typedKeyOf<MutableList<TryBlockData>>("TRY_BLOCK_DATAS")
 
-class TryBlockData(val startLabel: Label, val stm: TryStatementBase) : Timed {
+class TryBlockData(
+    val startLabel: Label,
+    val stm: TryStatementBase,
+    val sharedFinally: SharedFinally? = null
+) : Timed {
     override val creationInstant: Instant = Instant.now()
     // List of labels of where finally was generated
     val labels: MutableList<FLabel> = mutableListOf()
@@ -171,18 +245,98 @@ class TryBlockData(val startLabel: Label, val stm: TryStatementBase) : Timed {
         if (this.stm.finallyStatement.isNotEmpty) {
 
             val start = Label()
-            val end = Label()
+            val mvHelper = METHOD_VISITOR.require(data)
 
-            METHOD_VISITOR.require(data).methodVisitor.visitLabel(start)
+            mvHelper.methodVisitor.visitLabel(start)
 
-            manager.process(Instructions::class.java, this.stm.finallyStatement, data)
+            val end = this.sharedFinally?.jump(mvHelper) ?: Label().also {
+                manager.process(Instructions::class.java, this.stm.finallyStatement, data)
 
-            METHOD_VISITOR.require(data).methodVisitor.visitLabel(end)
+                mvHelper.methodVisitor.visitLabel(it)
+            }
 
             this.labels.add(FLabel(start, end))
         }
     }
 
+    companion object {
+        /**
+         * Visits finally blocks of [blocks] (a part of [TRY_BLOCK_DATA], from the outermost to the innermost try
+         * statement) from the innermost to the outermost, in the order they are executed. While a finally block is
+         * visited, [TRY_BLOCK_DATA] only has the try statements which enclose it.
+         *
+         * Outer finally blocks must be visited last: a [shared][SharedFinally] finally block merges the state of
+         * every exit of its try statement, so locals declared inside of it can not be read after it returns.
+         */
+        fun visitAll(blocks: List<TryBlockData>, manager: ProcessorManager<*>, data: TypedData) {
+            val all = TRY_BLOCK_DATA.getOrNull(data) ?: return
+
+            TRY_BLOCK_DATA.remove(data)
+
+            blocks.asReversed().forEach {
+                TRY_BLOCK_DATA.set(data, all.subList(0, all.indexOf(it)).toMutableList())
+                it.visit(manager, data)
+            }
+
+            TRY_BLOCK_DATA.set(data, all)
+        }
+    }
+}
+
+/**
+ * Finally block of a try statement generated only once, instead of being inlined at every exit of the
+ * try statement (see [FINALLY_INLINE_THRESHOLD][com.koresframework.kores.bytecode.FINALLY_INLINE_THRESHOLD]).
+ *
+ * Exits store their index in [selector] and jump to [entry], the finally block jumps back to the exit
+ * with a `tableswitch`. Values which must survive the finally block are kept in slots initialized before the
+ * try statement, so they have the same type at every exit: [returnSlot] for returned values and [exceptionSlot]
+ * for the exception caught by the catch-all handler.
+ *
+ * @property returnSlot Slot of returned value, `null` if the method returns `void`.
+ * @property returnType Return type of the method, `null` if the method returns `void`.
+ */
+class SharedFinally(
+    val selector: Int,
+    val returnSlot: Int?,
+    val returnType: Type?,
+    val exceptionSlot: Int
+) {
+    /**
+     * Start of the finally block.
+     */
+    val entry = Label()
+
+    /**
+     * Labels to jump back to, indexed by the value of [selector].
+     */
+    val continuations: MutableList<Label> = mutableListOf()
+
+    /**
+     * Amount of slots which are in use at some exit, the finally block must only store variables after these slots.
+     */
+    var reservedLocals = 0
+        private set
+
+    /**
+     * Jumps to the finally block, and visits the label which the finally block jumps back to.
+     *
+     * @return Label which the finally block jumps back to.
+     */
+    fun jump(mvHelper: MethodVisitorHelper): Label {
+        val mv = mvHelper.methodVisitor
+        val continuation = Label()
+
+        this.reservedLocals = maxOf(this.reservedLocals, mvHelper.currentPos() + 1)
+
+        InsnUtil.visitInt(this.continuations.size, mv)
+        mv.visitVarInsn(Opcodes.ISTORE, this.selector)
+        mv.visitJumpInsn(Opcodes.GOTO, this.entry)
+        mv.visitLabel(continuation)
+
+        this.continuations.add(continuation)
+
+        return continuation
+    }
 }
 
 data class FLabel(val start: Label, val end: Label)
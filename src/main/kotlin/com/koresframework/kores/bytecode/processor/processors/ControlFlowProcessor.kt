@@ -31,6 +31,7 @@ import com.koresframework.kores.base.ControlFlow
 import com.koresframework.kores.bytecode.processor.FLOWS
 import com.koresframework.kores.bytecode.processor.METHOD_VISITOR
 import com.koresframework.kores.bytecode.processor.TRY_BLOCK_DATA
+import com.koresframework.kores.bytecode.processor.TryBlockData
 import com.koresframework.kores.processor.Processor
 import com.koresframework.kores.processor.ProcessorManager
 import com.github.jonathanxd.iutils.data.TypedData
@@ -57,21 +58,15 @@ object ControlFlowProcessor : Processor<ControlFlow> {
                 val anyGen = blocks.any { it.canGen() }
 
                 if (anyGen) {
-                    TRY_BLOCK_DATA.remove(data)
+                    val time =
+                        if (part.at != null) FLOWS.require(data).first { it.label == part.at }.creationInstant
+                        else flow.creationInstant
 
-                    blocks.forEach {
-                        val time =
-                            if (part.at != null) FLOWS.require(data).first { it.label == part.at }.creationInstant
-                            else flow.creationInstant
+                    // Hacky check to determine whether block is inside of the try-catch or not
+                    // If flow is created before the statement
+                    val inside = blocks.filter { time.isBefore(it.creationInstant) }
 
-                        // Hacky check to determine whether block is inside of the try-catch or not
-                        if (time.isBefore(it.creationInstant)) {
-                            // If flow is created before the statement
-                            it.visit(processorManager, data)
-                        }
-                    }
-
-                    TRY_BLOCK_DATA.set(data, blocks)
+                    TryBlockData.visitAll(inside, processorManager, data)
                 }
             }
         }
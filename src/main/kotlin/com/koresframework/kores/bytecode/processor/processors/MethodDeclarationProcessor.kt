@@ -49,6 +49,8 @@ import com.github.jonathanxd.iutils.kt.require
 import com.koresframework.kores.util.*
 import org.objectweb.asm.Label
 import org.objectweb.asm.Opcodes
+import java.util.Collections
+import java.util.IdentityHashMap
 
 object MethodDeclarationProcessor : Processor<MethodDeclarationBase> {
 
@@ -60,6 +62,8 @@ object MethodDeclarationProcessor : Processor<MethodDeclarationBase> {
         val old =
             if (IN_EXPRESSION.contains(data)) IN_EXPRESSION.require(data)
             else null
+        val oldReturnType = METHOD_RETURN_TYPE.getOrNull(data)
+        val oldUninitialized = UNINITIALIZED_VARIABLES.getOrNull(data)
 
         METHOD_DECLARATIONS.add(data, part)
         IN_EXPRESSION.set(data, 0)
@@ -157,6 +161,9 @@ object MethodDeclarationProcessor : Processor<MethodDeclarationBase> {
         if (!isAbstract || isConstructor) {
             mvHelper.methodVisitor.visitCode()
 
+            METHOD_RETURN_TYPE.set(data, infer.returnType)
+            UNINITIALIZED_VARIABLES.set(data, Collections.newSetFromMap(IdentityHashMap()))
+
             METHOD_VISITOR.inContext(data, mvHelper) {
                 val startLabel = Label()
                 mvHelper.methodVisitor.visitLabel(startLabel)
@@ -249,8 +256,12 @@ object MethodDeclarationProcessor : Processor<MethodDeclarationBase> {
         }
 
         IN_EXPRESSION.remove(data)
+        METHOD_RETURN_TYPE.remove(data)
+        UNINITIALIZED_VARIABLES.remove(data)
 
         if (old != null) IN_EXPRESSION.set(data, old)
+        if (oldReturnType != null) METHOD_RETURN_TYPE.set(data, oldReturnType)
+        if (oldUninitialized != null) UNINITIALIZED_VARIABLES.set(data, oldUninitialized)
 
         mvHelper.methodVisitor.visitEnd()
 
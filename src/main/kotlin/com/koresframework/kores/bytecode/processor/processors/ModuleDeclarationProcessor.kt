@@ -29,14 +29,13 @@ package com.koresframework.kores.bytecode.processor.processors
 
 import com.koresframework.kores.base.ModuleDeclaration
 import com.koresframework.kores.bytecode.BytecodeClass
-import com.koresframework.kores.bytecode.processor.BYTECODE_CLASS_LIST
+import com.koresframework.kores.bytecode.processor.emitBytecodeClass
 import com.koresframework.kores.bytecode.processor.SOURCE_FILE_FUNCTION
 import com.koresframework.kores.bytecode.util.ModifierUtil
 import com.koresframework.kores.processor.Processor
 import com.koresframework.kores.processor.ProcessorManager
 import com.koresframework.kores.type.internalName
 import com.github.jonathanxd.iutils.data.TypedData
-import com.github.jonathanxd.iutils.kt.add
 import org.objectweb.asm.ClassWriter
 import org.objectweb.asm.Opcodes
 
@@ -108,7 +107,7 @@ object ModuleDeclarationProcessor : Processor<ModuleDeclaration> {
         moduleVisitor.visitEnd()
         cw.visitEnd()
 
-        BYTECODE_CLASS_LIST.add(data,
+        data.emitBytecodeClass(
             com.koresframework.kores.bytecode.BytecodeClass(part, cw.toByteArray())
         )
     }
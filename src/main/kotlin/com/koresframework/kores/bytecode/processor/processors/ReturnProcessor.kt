@@ -27,6 +27,7 @@
  */
 package com.koresframework.kores.bytecode.processor.processors
 
+import com.koresframework.kores.Instruction
 import com.koresframework.kores.Types
 import com.koresframework.kores.base.Return
 import com.koresframework.kores.base.VariableDeclaration
@@ -56,6 +57,7 @@ object ReturnProcessor : Processor<Return> {
 
         var value = part.value
         var finallyInlined = false
+        var returnSlot: Int? = null
 
         val toRetType = part.type
 
@@ -64,8 +66,16 @@ object ReturnProcessor : Processor<Return> {
                 val anyGen = blocks.any { it.canGen() }
 
                 if (anyGen) {
+                    // Shared finally blocks merge the state of every exit, so the value must be kept in
+                    // the slot initialized by the outermost of them, before every try statement
+                    val sharedReturnSlot = blocks.firstNotNullOfOrNull { it.sharedFinally?.returnSlot }
 
-                    if (!toRetType.`is`(Types.VOID)) {
+                    if (!toRetType.`is`(Types.VOID) && sharedReturnSlot != null) {
+                        this.processValue(value, toRetType, data, processorManager)
+
+                        mv.visitVarInsn(Type.getType(toRetType.javaSpecName).getOpcode(Opcodes.ISTORE), sharedReturnSlot)
+                        returnSlot = sharedReturnSlot
+                    } else if (!toRetType.`is`(Types.VOID)) {
                         val unique = mvHelper.getUniqueVariableName("\$tmpVar_")
 
                         val variable = variable(toRetType, unique, value)
@@ -73,30 +83,17 @@ object ReturnProcessor : Processor<Return> {
                         value = accessVariable(variable.type, variable.name)
                     }
 
-                    TRY_BLOCK_DATA.remove(data)
-
-                    blocks.forEach { it.visit(processorManager, data) }
+                    TryBlockData.visitAll(blocks.toList(), processorManager, data)
 
                     finallyInlined = true
-
-                    TRY_BLOCK_DATA.set(data, blocks)
                 }
             }
         }
 
-        val safeValue = value.safeForComparison
-
-        if (safeValue != Void && safeValue != KoresNothing) {
-            value.typeOrNull?.let { origin ->
-                if (!origin.`is`(toRetType))
-                    value = cast(origin, toRetType, value)
-            }
-
-            IN_EXPRESSION.incrementInContext(data) {
-                processorManager.process(value::class.java, value, data)
-            }
-
-        }
+        if (returnSlot != null)
+            mv.visitVarInsn(Type.getType(toRetType.javaSpecName).getOpcode(Opcodes.ILOAD), returnSlot)
+        else
+            this.processValue(value, toRetType, data, processorManager)
 
         var opcode = Opcodes.RETURN
 
@@ -119,5 +116,28 @@ object ReturnProcessor : Processor<Return> {
 
     }
 
+    /**
+     * Pushes [value] casted to [toRetType] to the stack, if there is a value.
+     */
+    private fun processValue(
+        value: Instruction,
+        toRetType: java.lang.reflect.Type,
+        data: TypedData,
+        processorManager: ProcessorManager<*>
+    ) {
+        var castedValue = value
+        val safeValue = value.safeForComparison
+
+        if (safeValue != Void && safeValue != KoresNothing) {
+            castedValue.typeOrNull?.let { origin ->
+                if (!origin.`is`(toRetType))
+                    castedValue = cast(origin, toRetType, castedValue)
+            }
+
+            IN_EXPRESSION.incrementInContext(data) {
+                processorManager.process(castedValue::class.java, castedValue, data)
+            }
+        }
+    }
 
 }
\ No newline at end of file
@@ -31,21 +31,36 @@ import com.github.jonathanxd.iutils.data.TypedData
 import com.github.jonathanxd.iutils.kt.add
 import com.github.jonathanxd.iutils.kt.require
 import com.koresframework.kores.Instructions
+import com.koresframework.kores.Types
+import com.koresframework.kores.base.BodyHolder
 import com.koresframework.kores.base.CatchStatement
+import com.koresframework.kores.base.IfStatement
 import com.koresframework.kores.base.ThrowException
 import com.koresframework.kores.base.TryStatement
+import com.koresframework.kores.bytecode.FINALLY_INLINE_THRESHOLD
+import com.koresframework.kores.bytecode.common.MethodVisitorHelper
+import com.koresframework.kores.bytecode.common.Variable
+import com.koresframework.kores.bytecode.processor.METHOD_RETURN_TYPE
 import com.koresframework.kores.bytecode.processor.METHOD_VISITOR
+import com.koresframework.kores.bytecode.processor.SharedFinally
 import com.koresframework.kores.bytecode.processor.TRY_BLOCK_DATA
 import com.koresframework.kores.bytecode.processor.TryBlockData
+import com.koresframework.kores.bytecode.processor.UNINITIALIZED_VARIABLES
 import com.koresframework.kores.common.KoresNothing
 import com.koresframework.kores.factory.accessVariable
 import com.koresframework.kores.factory.variable
 import com.koresframework.kores.processor.Processor
 import com.koresframework.kores.processor.ProcessorManager
+import com.koresframework.kores.safeForComparison
+import com.koresframework.kores.type.`is`
 import com.koresframework.kores.type.internalName
+import com.koresframework.kores.type.javaSpecName
 import com.koresframework.kores.type.koresType
 import org.objectweb.asm.Label
 import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.LabelNode
 
 object TryStatementProcessor : Processor<TryStatement> {
 
@@ -65,6 +80,10 @@ object TryStatementProcessor : Processor<TryStatement> {
         val finallySource = part.finallyStatement
         val genFinally = finallySource.isNotEmpty
 
+        val sharedFinally =
+            if (genFinally) this.sharedFinally(finallySource, mvHelper, data, processorManager)
+            else null
+
         val catches = mutableMapOf<CatchStatement, TryBlockData>()
 
         val outOfIf = Label() // Out of if
@@ -79,7 +98,7 @@ object TryStatementProcessor : Processor<TryStatement> {
                 mv.visitTryCatchBlock(l0, l1, lCatch, exceptionType.internalName)
             }
 
-            catches.put(catchBlock, TryBlockData(lCatch, part))
+            catches.put(catchBlock, TryBlockData(lCatch, part, sharedFinally))
         }
 
         fun TryBlockData.visitBlocks(start: Label, end: Label) {
@@ -91,34 +110,29 @@ object TryStatementProcessor : Processor<TryStatement> {
                 var last = start
 
                 this.labels.forEach {
-                    if (last.offset != it.start.offset) {
+                    if (!isEmptyRange(last, it.start)) {
                         mv.visitTryCatchBlock(last, it.start, lCatchAll, null)
                     }
                     last = it.end
                 }
 
-                if (last.offset != end.offset)
+                if (!isEmptyRange(last, end))
                     mv.visitTryCatchBlock(last, end, lCatchAll, null)
             }
 
         }
 
-        fun genFinally() {
+        // Only the finally block of this statement runs when the block completes normally,
+        // enclosing finally blocks run when the enclosing blocks complete
+        fun genFinally(block: TryBlockData) {
             if (!genFinally) return
-            TRY_BLOCK_DATA.getOrNull(data)?.let { blocks ->
-                if (blocks.isNotEmpty()) {
-                    TRY_BLOCK_DATA.remove(data)
-
-                    blocks.forEach { it.visit(processorManager, data) }
 
-                    TRY_BLOCK_DATA.set(data, blocks)
-                }
-            }
+            TryBlockData.visitAll(listOf(block), processorManager, data)
         }
 
         mv.visitLabel(l0)
 
-        val tryBlockData = TryBlockData(l0, part)
+        val tryBlockData = TryBlockData(l0, part, sharedFinally)
         TRY_BLOCK_DATA.add(data, tryBlockData)
 
         val body = part.body
@@ -126,7 +140,7 @@ object TryStatementProcessor : Processor<TryStatement> {
         mvHelper.enterNewFrame()
 
         processorManager.process(Instructions::class.java, body, data)
-        genFinally()
+        genFinally(tryBlockData)
 
         mvHelper.exitFrame()
 
@@ -172,7 +186,7 @@ object TryStatementProcessor : Processor<TryStatement> {
 
             processorManager.process(Instructions::class.java, codeSource, data)
 
-            genFinally()
+            genFinally(tdata)
 
             mvHelper.exitFrame()
 
@@ -187,7 +201,17 @@ object TryStatementProcessor : Processor<TryStatement> {
 
         mv.visitLabel(endTc)
 
-        if (genFinally) {
+        if (sharedFinally != null) {
+            mv.visitLabel(lCatchAll)
+            mv.visitVarInsn(Opcodes.ASTORE, sharedFinally.exceptionSlot)
+
+            sharedFinally.jump(mvHelper)
+
+            mv.visitVarInsn(Opcodes.ALOAD, sharedFinally.exceptionSlot)
+            mv.visitInsn(Opcodes.ATHROW)
+
+            this.visitSharedFinally(sharedFinally, finallySource, mvHelper, data, processorManager)
+        } else if (genFinally) {
             mv.visitLabel(lCatchAll)
             val end = Label()
 
@@ -228,4 +252,132 @@ object TryStatementProcessor : Processor<TryStatement> {
         TRY_BLOCK_DATA.require(data).remove(tryBlockData)
     }
 
+    /**
+     * Whether no instruction was emitted between [start] and [end].
+     *
+     * Labels visited into a [MethodNode][org.objectweb.asm.tree.MethodNode] (the [fused pipeline][com.koresframework.kores.bytecode.FUSED_PIPELINE])
+     * have no resolved offset, so the nodes between their [LabelNode]s are inspected instead.
+     */
+    private fun isEmptyRange(start: Label, end: Label): Boolean {
+        val startNode = start.info as? LabelNode
+        val endNode = end.info as? LabelNode
+
+        if (startNode == null || endNode == null)
+            return start.offset == end.offset
+
+        var node: AbstractInsnNode? = startNode
+
+        while (node != null && node !== endNode) {
+            if (node.opcode != -1)
+                return false
+
+            node = node.next
+        }
+
+        return node != null
+    }
+
+    /**
+     * Creates the [SharedFinally] of a try statement if its finally block is larger than [FINALLY_INLINE_THRESHOLD],
+     * and initializes the slots kept between exits and the finally block.
+     *
+     * Returns `null` (so the finally block is inlined) if a variable declared without a value is in scope,
+     * because the variable would have a different state at each exit, and the code after the try statement
+     * could not read it after the merge in the finally block.
+     */
+    private fun sharedFinally(
+        finallySource: Instructions,
+        mvHelper: MethodVisitorHelper,
+        data: TypedData,
+        processorManager: ProcessorManager<*>
+    ): SharedFinally? {
+        if (finallySource.weight() <= processorManager.options[FINALLY_INLINE_THRESHOLD])
+            return null
+
+        val returnType = METHOD_RETURN_TYPE.getOrNull(data) ?: return null
+        val uninitialized = UNINITIALIZED_VARIABLES.getOrNull(data)
+
+        if (uninitialized != null && mvHelper.getVariables().any { it in uninitialized })
+            return null
+
+        val mv = mvHelper.methodVisitor
+        val start = Label()
+
+        mv.visitLabel(start)
+
+        val selector = mvHelper.storeInternal("finallyTarget\$#", Types.INT, start)
+        val exceptionSlot = mvHelper.storeInternal("finallyException\$#", Throwable::class.java.koresType, start)
+
+        mv.visitInsn(Opcodes.ACONST_NULL)
+        mv.visitVarInsn(Opcodes.ASTORE, exceptionSlot)
+
+        if (returnType.`is`(Types.VOID))
+            return SharedFinally(selector, null, null, exceptionSlot)
+
+        val returnSlot = mvHelper.storeInternal("finallyReturn\$#", returnType, start)
+        val asmType = Type.getType(returnType.javaSpecName)
+
+        mv.visitInsn(
+            when (asmType.sort) {
+                Type.LONG -> Opcodes.LCONST_0
+                Type.FLOAT -> Opcodes.FCONST_0
+                Type.DOUBLE -> Opcodes.DCONST_0
+                Type.OBJECT, Type.ARRAY -> Opcodes.ACONST_NULL
+                else -> Opcodes.ICONST_0
+            }
+        )
+        mv.visitVarInsn(asmType.getOpcode(Opcodes.ISTORE), returnSlot)
+
+        return SharedFinally(selector, returnSlot, returnType, exceptionSlot)
+    }
+
+    /**
+     * Generates the finally block of [sharedFinally] after slots reserved by exits, followed by the `tableswitch`
+     * back to exits.
+     */
+    private fun visitSharedFinally(
+        sharedFinally: SharedFinally,
+        finallySource: Instructions,
+        mvHelper: MethodVisitorHelper,
+        data: TypedData,
+        processorManager: ProcessorManager<*>
+    ) {
+        val continuations = sharedFinally.continuations
+
+        if (continuations.isEmpty())
+            return
+
+        val mv = mvHelper.methodVisitor
+
+        mv.visitLabel(sharedFinally.entry)
+        mvHelper.enterNewFrame()
+
+        while (mvHelper.currentPos() + 1 < sharedFinally.reservedLocals) {
+            mvHelper.addVar(Variable("#finallyReserved", Types.INT, sharedFinally.entry, null, true, false))
+        }
+
+        processorManager.process(Instructions::class.java, finallySource, data)
+
+        mv.visitVarInsn(Opcodes.ILOAD, sharedFinally.selector)
+        mv.visitTableSwitchInsn(0, continuations.size - 1, continuations.first(), *continuations.toTypedArray())
+
+        mvHelper.exitFrame()
+    }
+
+    private fun MethodVisitorHelper.storeInternal(name: String, type: java.lang.reflect.Type, start: Label): Int {
+        val unique = this.getUniqueVariableName(name)
+
+        return this.storeInternalVar(unique, type, start, null).orElseThrow { this.failStore(unique) }
+    }
+
+    /**
+     * Amount of statements of [this], including statements of nested bodies.
+     */
+    private fun Instructions.weight(): Int =
+        this.sumOf {
+            val safe = it.safeForComparison
+
+            1 + ((safe as? BodyHolder)?.body?.weight() ?: 0) + ((safe as? IfStatement)?.elseStatement?.weight() ?: 0)
+        }
+
 }
\ No newline at end of file
@@ -32,15 +32,27 @@ import com.github.jonathanxd.iutils.kt.add
 import com.koresframework.kores.base.*
 import com.koresframework.kores.bytecode.FORCE_INDIFY_STRING_CONCAT
 import com.koresframework.kores.bytecode.INDIFY_STRING_CONCAT
+import com.koresframework.kores.bytecode.METHOD_SPLIT_THRESHOLD
+import com.koresframework.kores.bytecode.POST_PROCESSING_EXECUTOR
+import com.koresframework.kores.bytecode.POST_PROCESSING_LOOPS
+import com.koresframework.kores.bytecode.POST_PROCESSING_PARALLEL_THRESHOLD
+import com.koresframework.kores.bytecode.POST_PROCESSORS
+import com.koresframework.kores.bytecode.SPLIT_LARGE_METHODS
+import com.koresframework.kores.bytecode.coldPathOutliner
 import com.koresframework.kores.bytecode.doc.Doc
 import com.koresframework.kores.bytecode.doc.NestLogic
+import com.koresframework.kores.bytecode.isFusedPipeline
 import com.koresframework.kores.bytecode.isToGenerateNests
 import com.koresframework.kores.bytecode.nestAccessGenerationMode
+import com.koresframework.kores.bytecode.post.MethodSplitter
+import com.koresframework.kores.bytecode.post.Processor as ClassPostProcessor
 import com.koresframework.kores.bytecode.processor.*
+import com.koresframework.kores.bytecode.util.ASM_API
 import com.koresframework.kores.bytecode.util.AnnotationVisitorCapable
 import com.koresframework.kores.bytecode.util.ModifierUtil
 import com.koresframework.kores.bytecode.util.SwitchOnEnum
 import com.koresframework.kores.bytecode.util.allInnerTypes
+import com.koresframework.kores.bytecode.util.asm.KoresClassWriter
 import com.koresframework.kores.common.FieldRef
 import com.koresframework.kores.common.getNewNameBasedOnNameList
 import com.koresframework.kores.factory.accessVariable
@@ -55,6 +67,7 @@ import com.koresframework.kores.util.parametersAndReturnToInferredDesc
 import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.ClassWriter
 import org.objectweb.asm.Opcodes
+import org.objectweb.asm.tree.ClassNode
 
 /**
  * This class requires a strict debugging because `data` is recreated
@@ -173,7 +186,13 @@ object TypeDeclarationProcessor : Processor<TypeDeclaration> {
 
         val localPart = tmpPart
 
-        val cw = ClassWriter(ClassWriter.COMPUTE_MAXS or ClassWriter.COMPUTE_FRAMES)
+        val typeHierarchy = data.typeHierarchy(part, processorManager.options)
+        // Fused pipeline: generate into the tree, post-process and write only once
+        // Methods are split in the tree, so classes are generated into the tree to split methods too
+        val fused = processorManager.options.isFusedPipeline()
+        val cw: ClassVisitor =
+            if (fused || processorManager.options[SPLIT_LARGE_METHODS]) ClassNode(ASM_API)
+            else KoresClassWriter(ClassWriter.COMPUTE_MAXS or ClassWriter.COMPUTE_FRAMES, typeHierarchy)
 
         TYPE_DECLARATION.set(data, localPart)
         CLASS_VISITOR.set(data, cw)
@@ -306,11 +325,26 @@ object TypeDeclarationProcessor : Processor<TypeDeclaration> {
         CLASS_VISITOR.remove(data)
         SwitchOnEnum.MAPPINGS.remove(data)
 
-        BYTECODE_CLASS_LIST.getOrSet(data.mainData, mutableListOf())
-            .add(
-                at,
-                com.koresframework.kores.bytecode.BytecodeClass(localPart, cw.toByteArray())
-            )
+        val bytecode = if (cw is ClassNode) {
+            // When not fused, post-processors and the outliner run over the written class
+            ClassPostProcessor(
+                ASM_API,
+                if (fused) processorManager.options[POST_PROCESSORS] else emptyList(),
+                processorManager.options[POST_PROCESSING_LOOPS],
+                typeHierarchy,
+                processorManager.options[POST_PROCESSING_EXECUTOR],
+                processorManager.options[POST_PROCESSING_PARALLEL_THRESHOLD],
+                if (processorManager.options[SPLIT_LARGE_METHODS])
+                    MethodSplitter(ASM_API, processorManager.options[METHOD_SPLIT_THRESHOLD], typeHierarchy)
+                else null,
+                if (fused) processorManager.options.coldPathOutliner(typeHierarchy) else null
+            ).process(cw)
+        } else (cw as ClassWriter).toByteArray()
+
+        data.emitBytecodeClass(
+            com.koresframework.kores.bytecode.BytecodeClass(localPart, bytecode),
+            at
+        )
         TYPES.getOrNull(data)?.removeAll { it.`is`(localPart) }
         OUTER_TYPE_FIELD.remove(data)
         MEMBER_ACCESSES.getOrNull(data)?.removeAll { it.from.`is`(localPart) }
@@ -30,6 +30,7 @@ package com.koresframework.kores.bytecode.processor.processors
 import com.koresframework.kores.base.VariableDeclaration
 import com.koresframework.kores.bytecode.processor.IN_EXPRESSION
 import com.koresframework.kores.bytecode.processor.METHOD_VISITOR
+import com.koresframework.kores.bytecode.processor.UNINITIALIZED_VARIABLES
 import com.koresframework.kores.bytecode.processor.incrementInContext
 import com.koresframework.kores.common.KoresNothing
 import com.koresframework.kores.processor.Processor
@@ -79,6 +80,10 @@ object VariableDeclarationProcessor : Processor<VariableDeclaration> {
             val opcode = type.getOpcode(Opcodes.ISTORE) // ALOAD
 
             mv.visitVarInsn(opcode, i)
+        } else {
+            mvHelper.getVar(i).ifPresent {
+                UNINITIALIZED_VARIABLES.getOrNull(data)?.add(it)
+            }
         }
     }
 
@@ -29,47 +29,38 @@ package com.koresframework.kores.bytecode.util
 
 import com.koresframework.kores.base.TypeDeclaration
 import com.koresframework.kores.bytecode.BytecodeClass
-import java.nio.file.Files
 import java.nio.file.Path
-import java.nio.file.StandardOpenOption
+import java.util.concurrent.Executor
 
+/**
+ * Saves this class to [directory] (and the disassembled code if [disassemble] is `true`). The file is left
+ * untouched if it already has the same content.
+ *
+ * A new [ClassSaver] is used for each call, callers saving many classes to the same directory should own a
+ * [ClassSaver] (or use [saveAll]), so created directories are only checked once.
+ *
+ * @see ClassSaver
+ * @see saveAll
+ */
 fun BytecodeClass.save(
     directory: Path,
     disassemble: Boolean = false,
     alternativeDir: Boolean = false
 ) {
-
-    val targetPath = this.toPath(directory)
-
-    Files.createDirectories(targetPath)
-
-    val name = (this.declaration as? TypeDeclaration)?.simpleName ?: this.declaration.name
-
-    val classPath = targetPath.resolve("$name.class")
-
-    if (Files.exists(classPath))
-        Files.deleteIfExists(classPath)
-
-    Files.write(classPath, this.bytecode, StandardOpenOption.CREATE)
-
-    if (disassemble) {
-        val base =
-            if (alternativeDir) this.toPath(directory.resolve("disassembled")) else targetPath
-
-        Files.createDirectories(base)
-        val disassembledPath = base.resolve("$name.class.dissassembled")
-
-        if (Files.exists(disassembledPath))
-            Files.deleteIfExists(disassembledPath)
-
-        Files.write(
-            disassembledPath,
-            this.disassembledCode.toByteArray(),
-            StandardOpenOption.CREATE
-        )
-    }
+    ClassSaver(directory, disassemble, alternativeDir).save(this)
 }
 
+/**
+ * Saves all [classes][this] to [directory] through a [ClassSaver], writing in [executor] if present.
+ */
+fun Iterable<BytecodeClass>.saveAll(
+    directory: Path,
+    disassemble: Boolean = false,
+    alternativeDir: Boolean = false,
+    executor: Executor? = null
+): SaveStats =
+    ClassSaver(directory, disassemble, alternativeDir, executor).saveAll(this)
+
 fun BytecodeClass.toPath(base: Path): Path =
     ((this.declaration as? TypeDeclaration)?.packageName ?: this.declaration.name)
         .split('.')
@@ -0,0 +1,258 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.util
+
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import com.koresframework.kores.bytecode.BytecodeClassSink
+import java.io.Closeable
+import java.nio.ByteBuffer
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.PosixFileAttributeView
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Statistics of a [ClassSaver].
+ *
+ * @property written Amount of files written.
+ * @property skipped Amount of files skipped because their content did not change.
+ */
+data class SaveStats(val written: Long, val skipped: Long)
+
+/**
+ * Saves [BytecodeClass]es (and optionally their [disassembled code][BytecodeClass.disassembledCode]) to [directory],
+ * in the same layout as [BytecodeClass.save].
+ *
+ * Created directories are cached, files which already have the same content (compared by length, then byte by byte)
+ * are not touched, and files are written to a temporary file which is then atomically moved to the target, so readers
+ * (and file watchers) never see partially written files. Written files keep the permissions of the file they
+ * replace, new files are readable by everyone (`rw-r--r--`) on file systems with POSIX permissions.
+ *
+ * If [executor] is present, files are written in it with at most [maxPending] writes in flight, otherwise files
+ * are written in the calling thread. Use [await] (or [close]) to wait pending writes.
+ *
+ * This saver is a [BytecodeClassSink], so classes can be saved as soon as they are generated.
+ *
+ * @property directory Base directory.
+ * @property disassemble Whether to also save disassembled code.
+ * @property alternativeDir Whether to save disassembled code in `disassembled` directory inside [directory].
+ * @property executor Executor to write files.
+ * @property maxPending Maximum amount of writes in flight in [executor].
+ */
+class ClassSaver @JvmOverloads constructor(
+    val directory: Path,
+    val disassemble: Boolean = false,
+    val alternativeDir: Boolean = false,
+    val executor: Executor? = null,
+    val maxPending: Int = DEFAULT_MAX_PENDING
+) : BytecodeClassSink, Closeable {
+
+    private val directories = ConcurrentHashMap.newKeySet<Path>()
+    private val permits = Semaphore(this.maxPending)
+    private val pending = ConcurrentLinkedQueue<CompletableFuture<Unit>>()
+    private val written = AtomicLong()
+    private val skipped = AtomicLong()
+
+    init {
+        require(this.maxPending > 0) { "maxPending must be positive: ${this.maxPending}" }
+    }
+
+    /**
+     * Statistics of this saver.
+     */
+    val stats: SaveStats
+        get() = SaveStats(this.written.get(), this.skipped.get())
+
+    /**
+     * Saves [bytecodeClass].
+     */
+    override fun accept(bytecodeClass: BytecodeClass) {
+        this.save(bytecodeClass)
+    }
+
+    /**
+     * Saves [bytecodeClass], in [executor] if present.
+     */
+    fun save(bytecodeClass: BytecodeClass) {
+        val executor = this.executor
+
+        if (executor == null) {
+            this.write(bytecodeClass)
+            return
+        }
+
+        this.permits.acquire()
+
+        val future = try {
+            CompletableFuture.runAsync({ this.write(bytecodeClass) }, executor)
+                .whenComplete { _, _ -> this.permits.release() }
+                .thenApply { }
+        } catch (t: Throwable) {
+            this.permits.release()
+            throw t
+        }
+
+        this.pending.add(future)
+    }
+
+    /**
+     * Saves all [bytecodeClasses] and waits them to be written.
+     */
+    fun saveAll(bytecodeClasses: Iterable<BytecodeClass>): SaveStats {
+        bytecodeClasses.forEach(this::save)
+        this.await()
+
+        return this.stats
+    }
+
+    /**
+     * Waits all pending writes. Rethrows the first failure.
+     */
+    fun await() {
+        var failure: Throwable? = null
+
+        while (true) {
+            val future = this.pending.poll() ?: break
+
+            try {
+                future.join()
+            } catch (e: CompletionException) {
+                val cause = e.cause ?: e
+
+                if (failure == null) failure = cause
+                else failure.addSuppressed(cause)
+            }
+        }
+
+        if (failure != null)
+            throw failure
+    }
+
+    /**
+     * Waits all pending writes.
+     */
+    override fun close() {
+        this.await()
+    }
+
+    private fun write(bytecodeClass: BytecodeClass) {
+        val targetPath = bytecodeClass.toPath(this.directory)
+        val name = (bytecodeClass.declaration as? TypeDeclaration)?.simpleName ?: bytecodeClass.declaration.name
+
+        this.write(targetPath, "$name.class", bytecodeClass.rawBytecode)
+
+        if (this.disassemble) {
+            val base =
+                if (this.alternativeDir) bytecodeClass.toPath(this.directory.resolve("disassembled")) else targetPath
+
+            this.write(base, "$name.class.dissassembled", bytecodeClass.disassembledCode.toByteArray())
+        }
+    }
+
+    private fun write(directory: Path, name: String, bytes: ByteArray) {
+        if (this.directories.add(directory))
+            Files.createDirectories(directory)
+
+        val path = directory.resolve(name)
+
+        if (isSame(path, bytes)) {
+            this.skipped.incrementAndGet()
+            return
+        }
+
+        try {
+            writeAtomically(path, bytes)
+        } catch (e: NoSuchFileException) {
+            // Directory was removed after being cached
+            Files.createDirectories(directory)
+            writeAtomically(path, bytes)
+        }
+
+        this.written.incrementAndGet()
+    }
+
+    companion object {
+        /**
+         * Default [maxPending].
+         */
+        const val DEFAULT_MAX_PENDING = 64
+
+        /**
+         * Permissions of new files, the permissions of temporary files are owner-only.
+         */
+        private val FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--")
+
+        private fun isSame(path: Path, bytes: ByteArray): Boolean =
+            Files.isRegularFile(path) && Files.size(path) == bytes.size.toLong()
+                    && Files.readAllBytes(path).contentEquals(bytes)
+
+        /**
+         * Writes [bytes] to a temporary file in the directory of [path] and then moves it to [path]. The file keeps
+         * the permissions of the replaced file, or has [FILE_PERMISSIONS] if it is new.
+         */
+        internal fun writeAtomically(path: Path, bytes: ByteArray) {
+            val temp = Files.createTempFile(path.parent, ".${path.fileName}", ".tmp")
+
+            try {
+                if (Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView::class.java)) {
+                    val permissions =
+                        if (Files.exists(path)) Files.getPosixFilePermissions(path) else FILE_PERMISSIONS
+
+                    Files.setPosixFilePermissions(temp, permissions)
+                }
+
+                Files.newByteChannel(temp, StandardOpenOption.WRITE).use {
+                    val buffer = ByteBuffer.wrap(bytes)
+
+                    while (buffer.hasRemaining())
+                        it.write(buffer)
+                }
+
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+                } catch (e: AtomicMoveNotSupportedException) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING)
+                }
+            } finally {
+                Files.deleteIfExists(temp)
+            }
+        }
+    }
+}
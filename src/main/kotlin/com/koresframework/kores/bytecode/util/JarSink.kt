@@ -0,0 +1,417 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.util
+
+import com.koresframework.kores.base.ModuleDeclaration
+import com.koresframework.kores.base.TypeDeclaration
+import com.koresframework.kores.bytecode.BytecodeClass
+import com.koresframework.kores.bytecode.BytecodeClassSink
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.LocalDateTime
+import java.util.ArrayDeque
+import java.util.TreeMap
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.jar.JarFile
+import java.util.jar.Manifest
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+
+/**
+ * Compression method of a [JarSink] entry.
+ */
+enum class JarEntryMethod(internal val id: Int) {
+    /**
+     * Entry is stored without compression.
+     */
+    STORED(0),
+
+    /**
+     * Entry is compressed with deflate.
+     */
+    DEFLATED(8)
+}
+
+/**
+ * [BytecodeClassSink] which streams received classes into a JAR (or ZIP) file at [path].
+ *
+ * Entries are compressed as soon as they are received, in [executor] if present (or in the calling thread otherwise),
+ * and written in the order they are received, as soon as they and every entry received before them are compressed.
+ * Every entry has the same [timestamp], so classes received in the same order always produce the same file.
+ *
+ * When classes are received in an unpredictable order (such as with parallel generation), [sorted] makes the file
+ * deterministic by keeping compressed entries until the sink is [closed][close] and writing them in name order.
+ * This holds every compressed entry in memory, so it should only be enabled when the order is not deterministic.
+ *
+ * [Manifest] is written first (as required by [java.util.jar.JarInputStream]), and classes generated from a
+ * [ModuleDeclaration] are written as `module-info.class`. ZIP64 records are written when the file has more than
+ * `65535` entries or is larger than `4GB`, or for every entry and the end of central directory if [zip64] is `true`.
+ *
+ * This sink is thread-safe, so it can be used with parallel generation.
+ *
+ * @property path Path of file to write, replaced if exists.
+ * @property method Function which provides the [compression method][JarEntryMethod] of an entry name.
+ * @property level Deflate compression level.
+ * @property executor Executor to compress entries in parallel.
+ * @property sorted Whether entries are written in name order.
+ * @property timestamp Modification time of all entries.
+ * @property manifest Manifest to write.
+ * @property zip64 Whether ZIP64 records are always written, for consumers which expect them.
+ */
+class JarSink @JvmOverloads constructor(
+    val path: Path,
+    val method: (String) -> JarEntryMethod = { JarEntryMethod.DEFLATED },
+    val level: Int = Deflater.DEFAULT_COMPRESSION,
+    val executor: Executor? = null,
+    val sorted: Boolean = false,
+    val timestamp: LocalDateTime = DEFAULT_TIMESTAMP,
+    val manifest: Manifest? = null,
+    val zip64: Boolean = false
+) : BytecodeClassSink, Closeable {
+
+    private val channel = FileChannel.open(
+        this.path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+    )
+    private val dosTime = dosTime(this.timestamp)
+    private val names = mutableSetOf<String>()
+    private val pending = ArrayDeque<CompletableFuture<Entry>>()
+    private val sortedEntries = TreeMap<String, Entry>()
+    private val central = mutableListOf<CentralEntry>()
+    private var position = 0L
+    private var closed = false
+
+    init {
+        val manifest = this.manifest
+
+        if (manifest != null) {
+            try {
+                val bytes = ByteArrayOutputStream().also { manifest.write(it) }.toByteArray()
+
+                this.names.add(META_INF)
+                this.names.add(JarFile.MANIFEST_NAME)
+                this.write(Entry(META_INF, ByteArray(0), JarEntryMethod.STORED, this.level))
+                this.write(Entry(JarFile.MANIFEST_NAME, bytes, this.method(JarFile.MANIFEST_NAME), this.level))
+            } catch (t: Throwable) {
+                this.closed = true
+                this.channel.close()
+                throw t
+            }
+        }
+    }
+
+    /**
+     * Adds [bytecodeClass] as a class entry.
+     */
+    override fun accept(bytecodeClass: BytecodeClass) {
+        this.add(entryName(bytecodeClass), bytecodeClass.rawBytecode)
+    }
+
+    /**
+     * Adds an entry named [name] with [bytes] content, [bytes] must not be modified after this call.
+     *
+     * @throws IllegalArgumentException If an entry with same [name] was already added.
+     */
+    fun add(name: String, bytes: ByteArray) {
+        synchronized(this) {
+            if (this.closed)
+                throw IllegalStateException("Sink is closed.")
+
+            if (!this.names.add(name))
+                throw IllegalArgumentException("Duplicate entry: $name")
+
+            val method = this.method(name)
+            val level = this.level
+            val executor = this.executor
+
+            this.pending.add(
+                if (executor != null) CompletableFuture.supplyAsync({ Entry(name, bytes, method, level) }, executor)
+                else CompletableFuture.completedFuture(Entry(name, bytes, method, level))
+            )
+
+            this.flush(false)
+        }
+    }
+
+    /**
+     * Waits pending entries and writes central directory. Also closes the file.
+     */
+    override fun close() {
+        synchronized(this) {
+            if (this.closed)
+                return
+
+            this.closed = true
+
+            this.channel.use {
+                this.flush(true)
+
+                this.sortedEntries.values.forEach(this::write)
+                this.sortedEntries.clear()
+
+                this.writeCentralDirectory()
+            }
+        }
+    }
+
+    /**
+     * Takes compressed entries in received order, stopping at first entry not yet compressed unless [wait] is `true`.
+     */
+    private fun flush(wait: Boolean) {
+        while (this.pending.isNotEmpty()) {
+            val future = this.pending.peekFirst()
+
+            if (!wait && !future.isDone)
+                return
+
+            val entry = try {
+                future.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+
+            this.pending.removeFirst()
+
+            if (this.sorted)
+                this.sortedEntries[entry.name] = entry
+            else
+                this.write(entry)
+        }
+    }
+
+    private fun write(entry: Entry) {
+        val offset = this.position
+        val zip64 = this.zip64 || entry.size >= ZIP64_MAGIC || entry.data.size >= ZIP64_MAGIC
+        val extra = if (zip64) 20 else 0
+        val header = buffer(30 + entry.nameBytes.size + extra)
+
+        header.putInt(LOCAL_HEADER)
+        header.putShort((if (zip64) ZIP64_VERSION else VERSION).toShort())
+        header.putShort(UTF8_FLAG.toShort())
+        header.putShort(entry.method.id.toShort())
+        header.putInt(this.dosTime)
+        header.putInt(entry.crc.toInt())
+        header.putInt(if (zip64) ZIP64_MAGIC.toInt() else entry.data.size)
+        header.putInt(if (zip64) ZIP64_MAGIC.toInt() else entry.size)
+        header.putShort(entry.nameBytes.size.toShort())
+        header.putShort(extra.toShort())
+        header.put(entry.nameBytes)
+
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA.toShort())
+            header.putShort(16)
+            header.putLong(entry.size.toLong())
+            header.putLong(entry.data.size.toLong())
+        }
+
+        this.write(header.flip())
+        this.write(ByteBuffer.wrap(entry.data))
+
+        this.central.add(CentralEntry(entry.nameBytes, entry.method, entry.crc, entry.size, entry.data.size, offset))
+    }
+
+    private fun writeCentralDirectory() {
+        val start = this.position
+
+        for (entry in this.central) {
+            val size = entry.size.toLong()
+            val compressedSize = entry.compressedSize.toLong()
+            val zip64Size = this.zip64 || size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC
+            val zip64Offset = this.zip64 || entry.offset >= ZIP64_MAGIC
+            val extraData = (if (zip64Size) 16 else 0) + (if (zip64Offset) 8 else 0)
+            val extra = if (extraData > 0) extraData + 4 else 0
+            val header = buffer(46 + entry.nameBytes.size + extra)
+            val version = if (extra > 0) ZIP64_VERSION else VERSION
+
+            header.putInt(CENTRAL_HEADER)
+            header.putShort(ZIP64_VERSION.toShort())
+            header.putShort(version.toShort())
+            header.putShort(UTF8_FLAG.toShort())
+            header.putShort(entry.method.id.toShort())
+            header.putInt(this.dosTime)
+            header.putInt(entry.crc.toInt())
+            header.putInt(if (zip64Size) ZIP64_MAGIC.toInt() else entry.compressedSize)
+            header.putInt(if (zip64Size) ZIP64_MAGIC.toInt() else entry.size)
+            header.putShort(entry.nameBytes.size.toShort())
+            header.putShort(extra.toShort())
+            header.putShort(0) // Comment
+            header.putShort(0) // Disk number
+            header.putShort(0) // Internal attributes
+            header.putInt(0) // External attributes
+            header.putInt(if (zip64Offset) ZIP64_MAGIC.toInt() else entry.offset.toInt())
+            header.put(entry.nameBytes)
+
+            if (extra > 0) {
+                header.putShort(ZIP64_EXTRA.toShort())
+                header.putShort(extraData.toShort())
+
+                if (zip64Size) {
+                    header.putLong(size)
+                    header.putLong(compressedSize)
+                }
+
+                if (zip64Offset)
+                    header.putLong(entry.offset)
+            }
+
+            this.write(header.flip())
+        }
+
+        val end = this.position
+        val count = this.central.size.toLong()
+        val centralSize = end - start
+
+        if (this.zip64 || count >= 0xFFFF || centralSize >= ZIP64_MAGIC || start >= ZIP64_MAGIC) {
+            val record = buffer(56 + 20)
+
+            record.putInt(ZIP64_END)
+            record.putLong(44)
+            record.putShort(ZIP64_VERSION.toShort())
+            record.putShort(ZIP64_VERSION.toShort())
+            record.putInt(0) // Disk number
+            record.putInt(0) // Central directory disk
+            record.putLong(count)
+            record.putLong(count)
+            record.putLong(centralSize)
+            record.putLong(start)
+
+            record.putInt(ZIP64_LOCATOR)
+            record.putInt(0) // Zip64 end disk
+            record.putLong(end)
+            record.putInt(1) // Disks
+
+            this.write(record.flip())
+        }
+
+        val record = buffer(22)
+
+        record.putInt(END)
+        record.putShort(0) // Disk number
+        record.putShort(0) // Central directory disk
+        record.putShort(minOf(count, 0xFFFFL).toShort())
+        record.putShort(minOf(count, 0xFFFFL).toShort())
+        record.putInt(minOf(centralSize, ZIP64_MAGIC).toInt())
+        record.putInt(minOf(start, ZIP64_MAGIC).toInt())
+        record.putShort(0) // Comment
+
+        this.write(record.flip())
+    }
+
+    private fun write(buffer: ByteBuffer) {
+        while (buffer.hasRemaining())
+            this.position += this.channel.write(buffer)
+    }
+
+    private class Entry(val name: String, bytes: ByteArray, val method: JarEntryMethod, level: Int) {
+        val nameBytes = name.toByteArray(Charsets.UTF_8)
+        val size = bytes.size
+        val crc = CRC32().also { it.update(bytes) }.value
+        val data = if (method == JarEntryMethod.STORED) bytes else deflate(bytes, level)
+    }
+
+    private class CentralEntry(
+        val nameBytes: ByteArray,
+        val method: JarEntryMethod,
+        val crc: Long,
+        val size: Int,
+        val compressedSize: Int,
+        val offset: Long
+    )
+
+    companion object {
+        /**
+         * Default [timestamp], the earliest date representable in ZIP entries.
+         */
+        @JvmField
+        val DEFAULT_TIMESTAMP: LocalDateTime = LocalDateTime.of(1980, 1, 1, 0, 0, 0)
+
+        private const val META_INF = "META-INF/"
+        private const val CLASS_SUFFIX = ".class"
+
+        private const val LOCAL_HEADER = 0x04034b50
+        private const val CENTRAL_HEADER = 0x02014b50
+        private const val END = 0x06054b50
+        private const val ZIP64_END = 0x06064b50
+        private const val ZIP64_LOCATOR = 0x07064b50
+        private const val ZIP64_EXTRA = 0x0001
+        private const val ZIP64_MAGIC = 0xFFFFFFFFL
+        private const val VERSION = 20
+        private const val ZIP64_VERSION = 45
+        private const val UTF8_FLAG = 0x0800
+
+        /**
+         * Name of the entry of [bytecodeClass].
+         */
+        @JvmStatic
+        fun entryName(bytecodeClass: BytecodeClass): String =
+            when (val declaration = bytecodeClass.declaration) {
+                is ModuleDeclaration -> "module-info$CLASS_SUFFIX"
+                is TypeDeclaration -> declaration.type.replace('.', '/') + CLASS_SUFFIX
+                else -> declaration.name.replace('.', '/') + CLASS_SUFFIX
+            }
+
+        private fun buffer(size: Int) = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+
+        private fun dosTime(time: LocalDateTime): Int {
+            val date = ((time.year - 1980) shl 9) or (time.monthValue shl 5) or time.dayOfMonth
+            val dayTime = (time.hour shl 11) or (time.minute shl 5) or (time.second / 2)
+
+            return (date shl 16) or dayTime
+        }
+
+        private fun deflate(bytes: ByteArray, level: Int): ByteArray {
+            val deflater = Deflater(level, true)
+
+            try {
+                deflater.setInput(bytes)
+                deflater.finish()
+
+                val out = ByteArrayOutputStream(maxOf(bytes.size / 2, 64))
+                val buffer = ByteArray(8192)
+
+                while (!deflater.finished()) {
+                    val read = deflater.deflate(buffer)
+                    out.write(buffer, 0, read)
+                }
+
+                return out.toByteArray()
+            } finally {
+                deflater.end()
+            }
+        }
+    }
+}
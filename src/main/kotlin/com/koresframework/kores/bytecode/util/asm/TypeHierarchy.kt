@@ -0,0 +1,171 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.util.asm
+
+import org.objectweb.asm.ClassWriter
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Hierarchy information of a class, the information needed to compute stack map frames.
+ *
+ * @property internalName Internal name of the class.
+ * @property superName Internal name of the super class, `null` only for `java/lang/Object`.
+ * @property interfaces Internal names of implemented interfaces.
+ * @property isInterface Whether the class is an interface or not.
+ */
+data class TypeHierarchyInfo(
+    val internalName: String,
+    val superName: String?,
+    val interfaces: List<String>,
+    val isInterface: Boolean
+)
+
+/**
+ * Resolves [hierarchy information][TypeHierarchyInfo] of classes. Implementations must be thread-safe.
+ */
+fun interface TypeHierarchyResolver {
+
+    /**
+     * Resolves hierarchy information of [internalName].
+     *
+     * @return Hierarchy information or `null` if the class could not be resolved by this resolver.
+     */
+    fun resolve(internalName: String): TypeHierarchyInfo?
+
+    companion object {
+        /**
+         * Default resolver, looks for class files in the class path and only loads classes (without
+         * initializing them) when the class file could not be found.
+         */
+        @JvmField
+        val DEFAULT: TypeHierarchyResolver = CompositeTypeHierarchyResolver(
+            ClasspathTypeHierarchyResolver(TypeHierarchyResolver::class.java.classLoader),
+            ReflectionTypeHierarchyResolver(TypeHierarchyResolver::class.java.classLoader)
+        )
+    }
+}
+
+/**
+ * Type hierarchy used to compute common super classes of [ClassWriter] frames. Hierarchy information is
+ * resolved by the first of [resolvers] that knows the class, and computed common super classes are cached.
+ */
+class TypeHierarchy(val resolvers: List<TypeHierarchyResolver>) {
+
+    private val commonSuperClasses = ConcurrentHashMap<Pair<String, String>, String>()
+
+    /**
+     * Resolves hierarchy information of [internalName].
+     *
+     * @throws TypeNotPresentException if no resolver knows [internalName].
+     */
+    fun resolve(internalName: String): TypeHierarchyInfo =
+        this.resolvers.firstNotNullOfOrNull { it.resolve(internalName) }
+            ?: throw TypeNotPresentException(internalName.replace('/', '.'), null)
+
+    /**
+     * Computes the common super class of [type1] and [type2], as specified by [ClassWriter.getCommonSuperClass].
+     */
+    fun commonSuperClass(type1: String, type2: String): String =
+        this.commonSuperClasses.getOrPut(type1 to type2) { this.computeCommonSuperClass(type1, type2) }
+
+    private fun computeCommonSuperClass(type1: String, type2: String): String {
+        if (type1 == type2)
+            return type1
+
+        if (type1 == OBJECT || type2 == OBJECT)
+            return OBJECT
+
+        val info1 = this.resolve(type1)
+        val info2 = this.resolve(type2)
+
+        if (this.isAssignableFrom(type1, info2))
+            return type1
+
+        if (this.isAssignableFrom(type2, info1))
+            return type2
+
+        if (info1.isInterface || info2.isInterface)
+            return OBJECT
+
+        val superClasses = mutableSetOf<String>()
+        var current: TypeHierarchyInfo? = info1
+
+        while (current != null) {
+            superClasses += current.internalName
+            current = current.superName?.let { this.resolve(it) }
+        }
+
+        current = info2
+
+        while (current != null) {
+            if (current.internalName in superClasses)
+                return current.internalName
+
+            current = current.superName?.let { this.resolve(it) }
+        }
+
+        return OBJECT
+    }
+
+    /**
+     * Returns whether [type] is [from] class or a super type of [from] class.
+     */
+    private fun isAssignableFrom(type: String, from: TypeHierarchyInfo): Boolean {
+        val visited = mutableSetOf<String>()
+        val pending = ArrayDeque<TypeHierarchyInfo>()
+
+        pending.add(from)
+
+        while (pending.isNotEmpty()) {
+            val info = pending.removeFirst()
+
+            if (info.internalName == type)
+                return true
+
+            if (!visited.add(info.internalName))
+                continue
+
+            info.superName?.let { pending.add(this.resolve(it)) }
+            info.interfaces.forEach { pending.add(this.resolve(it)) }
+        }
+
+        return false
+    }
+
+    companion object {
+        private const val OBJECT = "java/lang/Object"
+    }
+}
+
+/**
+ * [ClassWriter] which uses [typeHierarchy] to compute common super classes instead of loading classes.
+ */
+class KoresClassWriter(flags: Int, val typeHierarchy: TypeHierarchy) : ClassWriter(flags) {
+    override fun getCommonSuperClass(type1: String, type2: String): String =
+        this.typeHierarchy.commonSuperClass(type1, type2)
+}
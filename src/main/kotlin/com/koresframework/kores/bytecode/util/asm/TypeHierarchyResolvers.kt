@@ -0,0 +1,133 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.bytecode.util.asm
+
+import com.koresframework.kores.base.*
+import com.koresframework.kores.bytecode.util.allTypes
+import com.koresframework.kores.type.koresType
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Resolves hierarchy information using the first resolver of [resolvers] that knows the class.
+ */
+class CompositeTypeHierarchyResolver(val resolvers: List<TypeHierarchyResolver>) : TypeHierarchyResolver {
+
+    constructor(vararg resolvers: TypeHierarchyResolver) : this(resolvers.toList())
+
+    override fun resolve(internalName: String): TypeHierarchyInfo? =
+        this.resolvers.firstNotNullOfOrNull { it.resolve(internalName) }
+}
+
+/**
+ * Resolves hierarchy information of [declarations] and their inner types. The index is built in the first
+ * resolution.
+ */
+class DeclarationTypeHierarchyResolver(val declarations: Collection<TypeDeclaration>) : TypeHierarchyResolver {
+
+    private val index by lazy {
+        this.declarations.flatMap { it.allTypes() }
+            .associate { it.internalName to info(it) }
+    }
+
+    override fun resolve(internalName: String): TypeHierarchyInfo? =
+        this.index[internalName]
+
+    private fun info(declaration: TypeDeclaration): TypeHierarchyInfo {
+        val superName = when {
+            declaration.isInterface -> "java/lang/Object"
+            declaration is EnumDeclaration -> "java/lang/Enum"
+            else -> ((declaration as? SuperClassHolder)?.superClass ?: Any::class.java).koresType.internalName
+        }
+
+        val interfaces = (declaration as? ImplementationHolder)?.implementations
+            ?.map { it.koresType.internalName }
+            .orEmpty()
+
+        return TypeHierarchyInfo(declaration.internalName, superName, interfaces, declaration.isInterface)
+    }
+}
+
+/**
+ * Resolves hierarchy information by reading class file headers from [classLoader] resources, without loading
+ * classes. Resolutions are cached.
+ */
+class ClasspathTypeHierarchyResolver(val classLoader: ClassLoader?) : TypeHierarchyResolver {
+
+    private val cache = ConcurrentHashMap<String, Optional<TypeHierarchyInfo>>()
+
+    override fun resolve(internalName: String): TypeHierarchyInfo? =
+        this.cache.computeIfAbsent(internalName) { Optional.ofNullable(this.read(it)) }.orElse(null)
+
+    private fun read(internalName: String): TypeHierarchyInfo? {
+        val resource = "$internalName.class"
+        val stream = (if (this.classLoader != null) this.classLoader.getResourceAsStream(resource)
+        else ClassLoader.getSystemResourceAsStream(resource)) ?: return null
+
+        val reader = stream.use { ClassReader(it) }
+
+        return TypeHierarchyInfo(
+            reader.className,
+            reader.superName,
+            reader.interfaces.toList(),
+            reader.access and Opcodes.ACC_INTERFACE != 0
+        )
+    }
+}
+
+/**
+ * Resolves hierarchy information by loading classes, without initializing them, from [classLoader].
+ * Resolutions are cached.
+ */
+class ReflectionTypeHierarchyResolver(val classLoader: ClassLoader?) : TypeHierarchyResolver {
+
+    private val cache = ConcurrentHashMap<String, Optional<TypeHierarchyInfo>>()
+
+    override fun resolve(internalName: String): TypeHierarchyInfo? =
+        this.cache.computeIfAbsent(internalName) { Optional.ofNullable(this.load(it)) }.orElse(null)
+
+    private fun load(internalName: String): TypeHierarchyInfo? {
+        val type = try {
+            Class.forName(internalName.replace('/', '.'), false, this.classLoader)
+        } catch (e: ClassNotFoundException) {
+            return null
+        } catch (e: LinkageError) {
+            return null
+        }
+
+        return TypeHierarchyInfo(
+            internalName,
+            type.superclass?.let { Type.getInternalName(it) } ?: if (type.isInterface) "java/lang/Object" else null,
+            type.interfaces.map { Type.getInternalName(it) },
+            type.isInterface
+        )
+    }
+}
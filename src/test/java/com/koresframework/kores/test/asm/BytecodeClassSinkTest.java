@@ -0,0 +1,83 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.SwitchTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class BytecodeClassSinkTest {
+
+    @Test
+    public void sinkTest() {
+        TypeDeclaration $ = SwitchTest_.$();
+
+        List<BytecodeClass> expected = new BytecodeGenerator().process($);
+        List<BytecodeClass> received = new ArrayList<>();
+
+        new BytecodeGenerator().process($, received::add);
+
+        Assert.assertEquals(expected.size(), received.size());
+        Assert.assertTrue(received.size() > 1);
+
+        // Outer class finishes last
+        BytecodeClass outer = received.get(received.size() - 1);
+        Assert.assertEquals($.getType(), ((TypeDeclaration) outer.getDeclaration()).getType());
+
+        List<String> expectedNames = expected.stream()
+                .map(it -> ((TypeDeclaration) it.getDeclaration()).getType())
+                .sorted()
+                .collect(Collectors.toList());
+
+        List<String> receivedNames = received.stream()
+                .map(it -> ((TypeDeclaration) it.getDeclaration()).getType())
+                .sorted()
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(expectedNames, receivedNames);
+
+        for (BytecodeClass bytecodeClass : received) {
+            String name = ((TypeDeclaration) bytecodeClass.getDeclaration()).getType();
+            BytecodeClass same = expected.stream()
+                    .filter(it -> ((TypeDeclaration) it.getDeclaration()).getType().equals(name))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+
+            Assert.assertTrue(Arrays.equals(same.getBytecode(), bytecodeClass.getBytecode()));
+        }
+    }
+}
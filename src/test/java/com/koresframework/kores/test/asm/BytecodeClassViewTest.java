@@ -0,0 +1,122 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.cache.DiskBytecodeGenerationCache;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.SwitchTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class BytecodeClassViewTest {
+
+    @Test
+    public void viewTest() throws Throwable {
+        List<BytecodeClass> classes = new BytecodeGenerator().process(SwitchTest_.$());
+
+        for (BytecodeClass bytecodeClass : classes) {
+            assertView(bytecodeClass);
+        }
+
+        instantiate(classes);
+    }
+
+    @Test
+    public void mappedViewTest() throws Throwable {
+        Path directory = Files.createTempDirectory("kores-cache");
+
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+            generator.process(SwitchTest_.$());
+        }
+
+        // Classes read from the disk cache are views over the mapped cache file
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            List<BytecodeClass> classes = generator.process(SwitchTest_.$());
+            Assert.assertEquals(1, cache.getStats().getHits());
+
+            for (BytecodeClass bytecodeClass : classes) {
+                assertView(bytecodeClass);
+            }
+
+            instantiate(classes);
+        }
+    }
+
+    private static void assertView(BytecodeClass bytecodeClass) throws Throwable {
+        byte[] bytecode = bytecodeClass.getBytecode();
+
+        ByteBuffer buffer = bytecodeClass.asByteBuffer();
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(bytecode.length, bytecodeClass.getSize());
+        Assert.assertEquals(ByteBuffer.wrap(bytecode), buffer);
+
+        try {
+            buffer.put(0, (byte) 0);
+            Assert.fail("Buffer must be read-only");
+        } catch (ReadOnlyBufferException ignored) {
+        }
+
+        // Consuming a view does not affect other views
+        buffer.get(new byte[buffer.remaining()]);
+        Assert.assertEquals(bytecode.length, bytecodeClass.asByteBuffer().remaining());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bytecodeClass.writeTo(stream);
+        Assert.assertArrayEquals(bytecode, stream.toByteArray());
+
+        ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+        bytecodeClass.writeTo(Channels.newChannel(channelStream));
+        Assert.assertArrayEquals(bytecode, channelStream.toByteArray());
+    }
+
+    private void instantiate(List<BytecodeClass> classes) throws Throwable {
+        CodeClassLoader loader = new CodeClassLoader(this.getClass().getClassLoader());
+        loader.define(classes);
+
+        Class<?> define = Class.forName(SwitchTest_.$().getType(), true, loader);
+
+        define.getDeclaredConstructor(int.class, int.class, SwitchTest_.TestEnum.class, String.class, Object.class)
+                .newInstance(3, 10, SwitchTest_.TestEnum.B, "AHEAD", new SwitchTest.MyObj());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.Types;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.classloader.ClassInject;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.factory.InvocationFactory;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.type.TypeRef;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassInjectTest {
+
+    @Test
+    public void classLoaderInjectTest() throws Throwable {
+        BytecodeClass[] classes = generate("com.InjectedInLoader");
+        ClassLoader loader = new ClassLoader(this.getClass().getClassLoader()) {
+        };
+
+        Class<?> define = ClassInject.INSTANCE.inject(loader, classes);
+
+        Assert.assertSame(loader, define.getClassLoader());
+        assertInner(define);
+
+        try {
+            ClassInject.INSTANCE.inject(loader, classes[0]);
+            Assert.fail("Duplicate definition must fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof LinkageError);
+        }
+    }
+
+    @Test
+    public void hostInjectTest() throws Throwable {
+        BytecodeClass[] classes = generate(ClassInjectTest.class.getPackageName() + ".InjectedInHost");
+
+        Class<?> define = ClassInject.INSTANCE.inject(ClassInjectTest.class, classes);
+
+        Assert.assertSame(ClassInjectTest.class.getClassLoader(), define.getClassLoader());
+        Assert.assertEquals(ClassInjectTest.class.getPackageName(), define.getPackageName());
+        assertInner(define);
+
+        try {
+            ClassInject.INSTANCE.inject(ClassInjectTest.class, classes[0]);
+            Assert.fail("Duplicate definition must fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof LinkageError);
+        }
+    }
+
+    @Test
+    public void hostOtherPackageTest() {
+        BytecodeClass[] classes = generate("com.InjectedInOtherPackage");
+
+        try {
+            ClassInject.INSTANCE.inject(ClassInjectTest.class, classes);
+            Assert.fail("Injection in a package other than the host package must fail");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    /**
+     * Inner class is resolved from the class loader the batch was injected in.
+     */
+    private static void assertInner(Class<?> define) throws Throwable {
+        Object inner = define.getDeclaredMethod("create").invoke(null);
+
+        Assert.assertEquals("inner", inner.toString());
+        Assert.assertSame(define.getClassLoader(), inner.getClass().getClassLoader());
+        Assert.assertSame(define, inner.getClass().getDeclaringClass());
+    }
+
+    private static BytecodeClass[] generate(String name) {
+        TypeRef outer = new TypeRef(name);
+        TypeRef inner = new TypeRef(outer, "Inner");
+
+        ClassDeclaration declaration = ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .qualifiedName(name)
+                .innerTypes(ClassDeclaration.Builder.builder()
+                        .outerType(outer)
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .qualifiedName("Inner")
+                        .methods(MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC)
+                                .returnType(Types.STRING)
+                                .name("toString")
+                                .body(Instructions.fromPart(Factories.returnValue(Types.STRING, Literals.STRING("inner"))))
+                                .build())
+                        .build())
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .returnType(Types.OBJECT)
+                        .name("create")
+                        .body(Instructions.fromPart(Factories.returnValue(Types.OBJECT,
+                                InvocationFactory.invokeConstructor(inner))))
+                        .build())
+                .build();
+
+        return new BytecodeGenerator().process(declaration).toArray(new BytecodeClass[0]);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.classloader.ArenaStats;
+import com.koresframework.kores.bytecode.classloader.ClassLoaderArena;
+import com.koresframework.kores.bytecode.classloader.ClassLoaderArenas;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.InnerClassTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ClassLoaderArenaTest {
+
+    @Test
+    public void arenaTest() throws Throwable {
+        ClassLoaderArenas<String> arenas = new ClassLoaderArenas<>();
+        List<BytecodeClass> classes = new BytecodeGenerator().process(InnerClassTest_.$());
+        ClassLoaderArena<String> arena = arenas.arena("v1");
+
+        Class<?> define = arena.define(classes);
+        Class<?> outer = Class.forName("test.InnerClass", true, define.getClassLoader());
+
+        Assert.assertSame(arena, arenas.arena("v1"));
+        // Inner classes are resolved from the arena
+        outer.getConstructor().newInstance();
+
+        long bytes = 0;
+
+        for (BytecodeClass bytecodeClass : classes) {
+            bytes += bytecodeClass.getBytecode().length;
+        }
+
+        ArenaStats<String> stats = arena.getStats();
+        Assert.assertTrue(classes.size() > 1);
+        Assert.assertEquals(classes.size(), stats.getClasses());
+        Assert.assertEquals(bytes, stats.getBytes());
+        Assert.assertEquals(stats.getBytes(), arenas.getOpenBytes());
+
+        Assert.assertTrue(arenas.close("v1"));
+        Assert.assertTrue(arena.isClosed());
+        Assert.assertEquals(0, arenas.getOpenBytes());
+
+        try {
+            arena.define(classes);
+            Assert.fail("Closed arena must not define classes");
+        } catch (IllegalStateException ignored) {
+        }
+
+        // Same scope defines the same class in a new arena
+        Assert.assertNotSame(arena, arenas.arena("v1"));
+        Assert.assertNotSame(define, arenas.arena("v1").define(classes));
+
+        // Closed arena is still reported after being replaced
+        List<ArenaStats<String>> all = arenas.stats();
+        Assert.assertEquals(2, all.size());
+        Assert.assertEquals(1, all.stream().filter(ArenaStats::getClosed).count());
+        Assert.assertEquals(1, all.stream().filter(it -> !it.getClosed()).count());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.bytecode.util.ClassSaver;
+import com.koresframework.kores.bytecode.util.ClassSaveUtilKt;
+import com.koresframework.kores.bytecode.util.SaveStats;
+import com.koresframework.kores.test.SwitchTest_;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+public class ClassSaverTest {
+
+    @Test
+    public void incrementalSaveTest() throws Exception {
+        List<BytecodeClass> classes = new BytecodeGenerator().process(SwitchTest_.$());
+        Path dir = Files.createTempDirectory("kores-save");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            SaveStats first = new ClassSaver(dir, true, true, executor, 2).saveAll(classes);
+            Assert.assertEquals(new SaveStats(classes.size() * 2L, 0), first);
+
+            Path classFile = ClassSaveUtilKt.toPathWithNameAnd(classes.get(0), dir, ".class");
+            Assert.assertArrayEquals(classes.get(0).getBytecode(), Files.readAllBytes(classFile));
+
+            FileTime time = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(classFile, time);
+
+            SaveStats second = new ClassSaver(dir, true, true, executor, 2).saveAll(classes);
+            Assert.assertEquals(new SaveStats(0, classes.size() * 2L), second);
+            Assert.assertEquals(time, Files.getLastModifiedTime(classFile));
+
+            Files.write(classFile, new byte[]{0});
+
+            ClassSaver saver = new ClassSaver(dir);
+            SaveStats third = saver.saveAll(classes);
+            Assert.assertEquals(new SaveStats(1, classes.size() - 1), third);
+            Assert.assertArrayEquals(classes.get(0).getBytecode(), Files.readAllBytes(classFile));
+
+            try (Stream<Path> files = Files.list(classFile.getParent())) {
+                Assert.assertTrue(files.noneMatch(it -> it.getFileName().toString().endsWith(".tmp")));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void permissionsTest() throws Exception {
+        List<BytecodeClass> classes = new BytecodeGenerator().process(SwitchTest_.$());
+        Path dir = Files.createTempDirectory("kores-save");
+
+        Assume.assumeTrue(Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class));
+
+        new ClassSaver(dir).saveAll(classes);
+
+        Path classFile = ClassSaveUtilKt.toPathWithNameAnd(classes.get(0), dir, ".class");
+        Assert.assertEquals(PosixFilePermissions.fromString("rw-r--r--"), Files.getPosixFilePermissions(classFile));
+
+        // Replaced files keep their permissions
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw----");
+        Files.setPosixFilePermissions(classFile, permissions);
+        Files.write(classFile, new byte[]{0});
+
+        Assert.assertEquals(new SaveStats(1, classes.size() - 1), new ClassSaver(dir).saveAll(classes));
+        Assert.assertEquals(permissions, Files.getPosixFilePermissions(classFile));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.Types;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeSpec;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.post.OutlineReport;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.factory.InvocationFactory;
+import com.koresframework.kores.helper.ConcatHelper;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.operator.Operators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ColdPathOutlinerTest {
+
+    @Test
+    public void coldPathTest() throws Throwable {
+        List<OutlineReport> reports = Collections.synchronizedList(new ArrayList<>());
+
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.INDIFY_STRING_CONCAT, false);
+        generator.getOptions().set(BytecodeOptions.OUTLINE_COLD_PATHS, true);
+        generator.getOptions().set(BytecodeOptions.COLD_PATH_REPORTER, reports::add);
+
+        Class<?> define = define(generator.process(declaration()).get(0));
+        Method check = define.getDeclaredMethod("check", String.class, String.class);
+
+        Assert.assertEquals(5, check.invoke(null, "value", "arg"));
+
+        try {
+            check.invoke(null, null, "arg");
+            Assert.fail("Validation must throw");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            Assert.assertEquals("Argument 'arg' must not be null", e.getCause().getMessage());
+        }
+
+        Assert.assertEquals(1, Arrays.stream(define.getDeclaredMethods())
+                .filter(it -> it.getName().startsWith("check$cold$") && it.isSynthetic())
+                .count());
+
+        OutlineReport report = reports.stream()
+                .filter(it -> it.getName().equals("check"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertEquals(1, report.getHelpers());
+        Assert.assertTrue(report.getSizeAfter() < report.getSizeBefore());
+    }
+
+    @Test
+    public void reporterFailureTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.INDIFY_STRING_CONCAT, false);
+        generator.getOptions().set(BytecodeOptions.OUTLINE_COLD_PATHS, true);
+        generator.getOptions().set(BytecodeOptions.COLD_PATH_REPORTER, report -> {
+            throw new IllegalStateException("Reporter failure");
+        });
+
+        // Helpers of methods outlined before the failure must be added to the class
+        Class<?> define = define(generator.process(declaration()).get(0));
+        Method check = define.getDeclaredMethod("check", String.class, String.class);
+
+        Assert.assertEquals(5, check.invoke(null, "value", "arg"));
+
+        try {
+            check.invoke(null, null, "arg");
+            Assert.fail("Validation must throw");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void disabledTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.INDIFY_STRING_CONCAT, false);
+
+        Class<?> define = define(generator.process(declaration()).get(0));
+
+        Assert.assertEquals(5, define.getDeclaredMethod("check", String.class, String.class).invoke(null, "value", "arg"));
+        Assert.assertTrue(Arrays.stream(define.getDeclaredMethods()).noneMatch(Method::isSynthetic));
+    }
+
+    private Class<?> define(BytecodeClass bytecodeClass) {
+        return bytecodeClass.defineWith(new CodeClassLoader(this.getClass().getClassLoader()));
+    }
+
+    private static ClassDeclaration declaration() {
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.ColdPath")
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .name("check")
+                        .returnType(Types.INT)
+                        .parameters(Factories.parameter(String.class, "value"), Factories.parameter(String.class, "name"))
+                        .body(Instructions.fromVarArgs(
+                                Factories.ifStatement(
+                                        Factories.ifExprs(Factories.check(Factories.accessVariable(String.class, "value"),
+                                                Operators.EQUAL_TO, Literals.NULL)),
+                                        Instructions.fromPart(Factories.throwException(
+                                                InvocationFactory.invokeConstructor(IllegalArgumentException.class,
+                                                        Factories.constructorTypeSpec(String.class),
+                                                        Collections.singletonList(ConcatHelper.builder("Argument '")
+                                                                .concat(Factories.accessVariable(String.class, "name"))
+                                                                .concat("' must not be null")
+                                                                .build()))
+                                        )),
+                                        Instructions.empty()
+                                ),
+                                Factories.returnValue(Types.INT, InvocationFactory.invokeVirtual(
+                                        String.class,
+                                        Factories.accessVariable(String.class, "value"),
+                                        "length",
+                                        new TypeSpec(Types.INT),
+                                        Collections.emptyList()
+                                ))
+                        ))
+                        .build())
+                .build();
+    }
+}
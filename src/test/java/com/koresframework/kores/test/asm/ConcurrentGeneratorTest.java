@@ -0,0 +1,188 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TryStatement;
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.bytecode.processor.processors.TryStatementProcessor;
+import com.koresframework.kores.test.ConcatTest_;
+import com.koresframework.kores.test.EnumTest_;
+import com.koresframework.kores.test.ForEach_;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.InvocationsTest_;
+import com.koresframework.kores.test.LocalClassTest_;
+import com.koresframework.kores.test.SwitchTest_;
+import com.koresframework.kores.test.SynchronizedTest_;
+import com.koresframework.kores.test.TryTest_;
+import com.koresframework.kores.test.TryWithResourcesTest_;
+import com.github.jonathanxd.iutils.option.Option;
+import com.github.jonathanxd.iutils.option.Options;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 25;
+
+    private static List<TypeDeclaration> declarations() {
+        List<TypeDeclaration> declarations = new ArrayList<>();
+
+        declarations.add(SwitchTest_.$());
+        declarations.add(TryTest_.$());
+        declarations.add(InnerClassTest_.$());
+        declarations.add(ConcatTest_.$());
+        declarations.add(EnumTest_.$());
+        declarations.add(ForEach_.$());
+        declarations.add(LocalClassTest_.$());
+        declarations.add(SynchronizedTest_.$());
+        declarations.add(TryWithResourcesTest_.$());
+        declarations.add(InvocationsTest_.$());
+
+        return declarations;
+    }
+
+    private static void assertSameBytecode(List<BytecodeClass> expected, List<BytecodeClass> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertTrue(Arrays.equals(expected.get(i).getBytecode(), actual.get(i).getBytecode()));
+        }
+    }
+
+    @Test
+    public void frozenOptionsTest() {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        Options options = generator.getOptions();
+
+        options.set(BytecodeOptions.CHECK, true);
+        generator.freeze();
+        options.set(BytecodeOptions.CHECK, false);
+
+        Assert.assertTrue(generator.isFrozen());
+        Assert.assertTrue(generator.getOptions().get(BytecodeOptions.CHECK));
+    }
+
+    @Test
+    public void frozenCustomOptionTest() {
+        Option<String> custom = new Option<>("default");
+        BytecodeGenerator generator = new BytecodeGenerator();
+
+        generator.getOptions().set(custom, "custom");
+        generator.freeze();
+
+        // Options which are not bytecode options are kept in the snapshot
+        Assert.assertEquals("custom", generator.getOptions().get(custom));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenRegisterTest() {
+        new BytecodeGenerator().freeze().registerProcessor(TryStatementProcessor.INSTANCE, TryStatement.class);
+    }
+
+    @Test
+    public void concurrentGeneratorTest() throws Throwable {
+        List<TypeDeclaration> declarations = declarations();
+        List<List<BytecodeClass>> expected = new ArrayList<>();
+
+        BytecodeGenerator reference = new BytecodeGenerator();
+
+        for (TypeDeclaration declaration : declarations) {
+            expected.add(reference.process(declaration));
+        }
+
+        BytecodeGenerator shared = new BytecodeGenerator().freeze();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; ++t) {
+                int offset = t;
+
+                futures.add(executor.submit(() -> {
+                    start.await();
+
+                    for (int i = 0; i < ITERATIONS; ++i) {
+                        int index = (offset + i) % declarations.size();
+
+                        assertSameBytecode(expected.get(index), shared.process(declarations.get(index)));
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentProcessAllTest() throws Throwable {
+        List<TypeDeclaration> declarations = declarations();
+        BytecodeGenerator shared = new BytecodeGenerator().freeze();
+        List<List<BytecodeClass>> expected = shared.processAll(declarations);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<List<BytecodeClass>>>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; ++t) {
+                futures.add(executor.submit(() -> shared.processAll(declarations)));
+            }
+
+            for (Future<List<List<BytecodeClass>>> future : futures) {
+                List<List<BytecodeClass>> result = future.get();
+
+                for (int i = 0; i < expected.size(); ++i) {
+                    assertSameBytecode(expected.get(i), result.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
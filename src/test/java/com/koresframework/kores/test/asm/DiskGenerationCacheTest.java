@@ -0,0 +1,165 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.cache.DiskBytecodeGenerationCache;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.SwitchTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DiskGenerationCacheTest {
+
+    @Test
+    public void diskCacheTest() throws Throwable {
+        Path directory = Files.createTempDirectory("kores-cache");
+        TypeDeclaration $ = SwitchTest_.$();
+        List<BytecodeClass> generated;
+
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            generated = generator.process($);
+            Assert.assertEquals(0, cache.getStats().getHits());
+        }
+
+        // Reopen, simulating a restart
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            List<BytecodeClass> cached = generator.process($);
+
+            Assert.assertEquals(1, cache.getStats().getHits());
+            Assert.assertEquals(generated.size(), cached.size());
+
+            for (int i = 0; i < generated.size(); ++i) {
+                Assert.assertEquals(
+                        ((TypeDeclaration) generated.get(i).getDeclaration()).getType(),
+                        ((TypeDeclaration) cached.get(i).getDeclaration()).getType()
+                );
+                Assert.assertTrue(Arrays.equals(generated.get(i).getBytecode(), cached.get(i).getBytecode()));
+            }
+        }
+    }
+
+    @Test
+    public void corruptedRecordTest() throws Throwable {
+        Path directory = Files.createTempDirectory("kores-cache");
+        TypeDeclaration $ = SwitchTest_.$();
+        List<BytecodeClass> generated;
+
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            generated = generator.process($);
+        }
+
+        // Flip the last byte of the class bytes of the only record
+        Path segment;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(it -> it.getFileName().toString().endsWith(".kbc")).findFirst().orElseThrow();
+        }
+
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0xFF;
+        Files.write(segment, bytes);
+
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            List<BytecodeClass> regenerated = generator.process($);
+
+            Assert.assertEquals(0, cache.getStats().getHits());
+            Assert.assertEquals(1, cache.getStats().getMisses());
+            Assert.assertEquals(generated.size(), regenerated.size());
+
+            for (int i = 0; i < generated.size(); ++i)
+                Assert.assertArrayEquals(generated.get(i).getBytecode(), regenerated.get(i).getBytecode());
+
+            // Generated again and appended
+            Assert.assertArrayEquals(generated.get(0).getBytecode(), generator.process($).get(0).getBytecode());
+            Assert.assertEquals(1, cache.getStats().getHits());
+        }
+    }
+
+    @Test
+    public void sameNameTest() throws Throwable {
+        Path directory = Files.createTempDirectory("kores-cache");
+
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            Assert.assertEquals("first", GenerationCacheTest.invokeTest(generator.process(GenerationCacheTest.declaration("first"))));
+        }
+
+        // Reopen with a changed declaration of the same name, simulating a restart after a change
+        try (DiskBytecodeGenerationCache cache = new DiskBytecodeGenerationCache(directory)) {
+            BytecodeGenerator generator = new BytecodeGenerator();
+            generator.setCache(cache);
+
+            Assert.assertEquals("second", GenerationCacheTest.invokeTest(generator.process(GenerationCacheTest.declaration("second"))));
+            Assert.assertEquals(0, cache.getStats().getHits());
+            Assert.assertEquals(1, cache.getStats().getMisses());
+
+            // Both records are kept
+            Assert.assertEquals("first", GenerationCacheTest.invokeTest(generator.process(GenerationCacheTest.declaration("first"))));
+            Assert.assertEquals(1, cache.getStats().getHits());
+        }
+    }
+
+    @Test
+    public void lockTest() throws Throwable {
+        Path directory = Files.createTempDirectory("kores-cache");
+
+        try (DiskBytecodeGenerationCache ignored = new DiskBytecodeGenerationCache(directory)) {
+            try {
+                new DiskBytecodeGenerationCache(directory);
+                Assert.fail("Locked directory must not be opened");
+            } catch (IllegalStateException expected) {
+            }
+        }
+
+        // Released on close
+        new DiskBytecodeGenerationCache(directory).close();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.post.MethodProcessor;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.SwitchTest_;
+import com.koresframework.kores.test.TryTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FusedPipelineTest {
+
+    @Test
+    public void fusedSwitchTest() throws Throwable {
+        fusedPipelineTest(SwitchTest_.$())
+                .getDeclaredConstructor(int.class, int.class, SwitchTest_.TestEnum.class, String.class, Object.class)
+                .newInstance(3, 10, SwitchTest_.TestEnum.B, "AHEAD", new SwitchTest.MyObj());
+    }
+
+    @Test
+    public void fusedTryTest() throws Throwable {
+        fusedPipelineTest(TryTest_.$()).getConstructor().newInstance();
+    }
+
+    @Test
+    public void fusedInnerClassTest() throws Throwable {
+        fusedPipelineTest(InnerClassTest_.$()).getConstructor().newInstance();
+    }
+
+    @Test
+    public void fusedTryFinallyTest() throws Throwable {
+        Method test = fusedPipelineTest(SharedFinallyTest.declaration()).getDeclaredMethod("test", Integer.TYPE);
+
+        Assert.assertEquals(10, test.invoke(null, 0));
+        Assert.assertEquals(20, test.invoke(null, 1));
+        Assert.assertEquals(30, test.invoke(null, 2));
+
+        Class<?> nested = fusedPipelineTest(SharedFinallyTest.nestedDeclaration());
+
+        Assert.assertEquals(20, nested.getDeclaredMethod("nested", Integer.TYPE).invoke(null, 2));
+        Assert.assertEquals(2, nested.getDeclaredMethod("loop", Integer.TYPE).invoke(null, 5));
+    }
+
+    private Class<?> fusedPipelineTest(TypeDeclaration declaration) throws Throwable {
+        BytecodeGenerator fused = new BytecodeGenerator();
+        BytecodeGenerator unfused = new BytecodeGenerator();
+        unfused.getOptions().set(BytecodeOptions.FUSED_PIPELINE, false);
+
+        List<BytecodeClass> fusedClasses = fused.process(declaration);
+        List<BytecodeClass> unfusedClasses = unfused.process(declaration);
+
+        Assert.assertEquals(unfusedClasses.size(), fusedClasses.size());
+
+        for (int i = 0; i < fusedClasses.size(); ++i) {
+            assertSameClass(read(unfusedClasses.get(i).getBytecode()), read(fusedClasses.get(i).getBytecode()));
+        }
+
+        CodeClassLoader loader = new CodeClassLoader(this.getClass().getClassLoader());
+        loader.define(fusedClasses);
+
+        return Class.forName(declaration.getType(), true, loader);
+    }
+
+    @Test
+    public void processorFailureTest() {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.POST_PROCESSORS, Collections.singletonList(
+                (MethodProcessor) (owner, methodNode) -> {
+                    throw new IllegalStateException("Processor failure");
+                }));
+
+        try {
+            generator.process(SwitchTest_.$());
+            Assert.fail("Processor failure must be propagated");
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+
+            while (cause != null && !(cause instanceof IllegalStateException))
+                cause = cause.getCause();
+
+            Assert.assertNotNull(cause);
+            Assert.assertEquals("Processor failure", cause.getMessage());
+        }
+    }
+
+    private static void assertSameClass(ClassNode expected, ClassNode actual) {
+        Assert.assertEquals(expected.name, actual.name);
+        Assert.assertEquals(expected.methods.size(), actual.methods.size());
+
+        for (int i = 0; i < expected.methods.size(); ++i) {
+            MethodNode expectedMethod = expected.methods.get(i);
+            MethodNode actualMethod = actual.methods.get(i);
+            String name = expected.name + "." + expectedMethod.name + expectedMethod.desc;
+
+            Assert.assertEquals(name, expectedMethod.name + expectedMethod.desc, actualMethod.name + actualMethod.desc);
+            Assert.assertEquals(name, expectedMethod.maxStack, actualMethod.maxStack);
+            Assert.assertEquals(name, expectedMethod.maxLocals, actualMethod.maxLocals);
+            Assert.assertEquals(name, opcodes(expectedMethod), opcodes(actualMethod));
+            Assert.assertEquals(name, expectedMethod.tryCatchBlocks.size(), actualMethod.tryCatchBlocks.size());
+        }
+    }
+
+    private static List<Integer> opcodes(MethodNode methodNode) {
+        List<Integer> opcodes = new ArrayList<>();
+
+        for (AbstractInsnNode insn : methodNode.instructions) {
+            if (insn.getOpcode() != -1)
+                opcodes.add(insn.getOpcode());
+        }
+
+        return opcodes;
+    }
+
+    private static ClassNode read(byte[] bytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytes).accept(node, ClassReader.SKIP_FRAMES);
+        return node;
+    }
+}
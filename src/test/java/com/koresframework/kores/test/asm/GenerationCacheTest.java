@@ -0,0 +1,157 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.cache.CacheStats;
+import com.koresframework.kores.bytecode.cache.MemoryBytecodeGenerationCache;
+import com.koresframework.kores.bytecode.cache.StructuralHash;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.post.DeadCodeRemover;
+import com.koresframework.kores.bytecode.post.MethodProcessor;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.SwitchTest_;
+import com.koresframework.kores.test.TryTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class GenerationCacheTest {
+
+    @Test
+    public void memoryCacheTest() {
+        MemoryBytecodeGenerationCache cache = new MemoryBytecodeGenerationCache(1);
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.setCache(cache);
+
+        // Equal structure built twice
+        List<BytecodeClass> first = generator.process(SwitchTest_.$());
+        List<BytecodeClass> second = generator.process(SwitchTest_.$());
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(new CacheStats(1, 1, 0, 1), cache.getStats());
+
+        // Other structure
+        TypeDeclaration other = TryTest_.$();
+        Assert.assertNotSame(first, generator.process(other));
+        Assert.assertEquals(new CacheStats(1, 2, 1, 1), cache.getStats());
+
+        // Other options
+        generator.getOptions().set(BytecodeOptions.POST_PROCESSING, false);
+        generator.process(other);
+        Assert.assertEquals(new CacheStats(1, 3, 2, 1), cache.getStats());
+    }
+
+    @Test
+    public void structuralKeyTest() {
+        BytecodeGenerator generator = new BytecodeGenerator();
+
+        Assert.assertEquals(
+                StructuralHash.INSTANCE.of(SwitchTest_.$(), generator.getOptions(), "SwitchTest_.java"),
+                StructuralHash.INSTANCE.of(SwitchTest_.$(), generator.getOptions(), "SwitchTest_.java")
+        );
+
+        Assert.assertNotEquals(
+                StructuralHash.INSTANCE.of(SwitchTest_.$(), generator.getOptions(), "SwitchTest_.java"),
+                StructuralHash.INSTANCE.of(TryTest_.$(), generator.getOptions(), "SwitchTest_.java")
+        );
+
+        // Inner types refer to their outer type
+        Assert.assertEquals(
+                StructuralHash.INSTANCE.of(InnerClassTest_.$(), generator.getOptions(), "InnerClassTest_.java"),
+                StructuralHash.INSTANCE.of(InnerClassTest_.$(), generator.getOptions(), "InnerClassTest_.java")
+        );
+
+        // Processors provided by Kores are part of the key
+        generator.getOptions().set(BytecodeOptions.POST_PROCESSORS, Arrays.asList(DeadCodeRemover.INSTANCE));
+        Assert.assertNotNull(StructuralHash.INSTANCE.of(SwitchTest_.$(), generator.getOptions(), "SwitchTest_.java"));
+    }
+
+    @Test
+    public void customProcessorTest() {
+        MemoryBytecodeGenerationCache cache = new MemoryBytecodeGenerationCache(1);
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.setCache(cache);
+        generator.getOptions().set(BytecodeOptions.POST_PROCESSORS, Arrays.asList(
+                DeadCodeRemover.INSTANCE,
+                (MethodProcessor) (owner, methodNode) -> methodNode));
+
+        Assert.assertNull(StructuralHash.INSTANCE.of(SwitchTest_.$(), generator.getOptions(), "SwitchTest_.java"));
+
+        // Output may depend on the state of the processor, so it is never cached
+        Assert.assertNotSame(generator.process(SwitchTest_.$()), generator.process(SwitchTest_.$()));
+        Assert.assertEquals(new CacheStats(0, 0, 0, 0), cache.getStats());
+    }
+
+    @Test
+    public void sameNameTest() throws Throwable {
+        MemoryBytecodeGenerationCache cache = new MemoryBytecodeGenerationCache();
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.setCache(cache);
+
+        Assert.assertNotEquals(
+                StructuralHash.INSTANCE.of(declaration("first"), generator.getOptions(), "SameName.java"),
+                StructuralHash.INSTANCE.of(declaration("second"), generator.getOptions(), "SameName.java")
+        );
+
+        generator.process(declaration("first"));
+        List<BytecodeClass> second = generator.process(declaration("second"));
+
+        Assert.assertEquals(new CacheStats(0, 2, 0, 2), cache.getStats());
+        Assert.assertEquals("second", invokeTest(second));
+    }
+
+    static TypeDeclaration declaration(String value) {
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.generation.SameName")
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .returnType(String.class)
+                        .name("test")
+                        .body(Instructions.fromPart(Factories.returnValue(String.class, Literals.STRING(value))))
+                        .build())
+                .build();
+    }
+
+    static Object invokeTest(List<BytecodeClass> classes) throws Throwable {
+        return new CodeClassLoader().define(classes).getDeclaredMethod("test").invoke(null);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.classloader.HiddenClassDefiner;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.literal.Literals;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandles;
+
+public class HiddenClassTest {
+
+    @Test
+    public void hiddenClassTest() throws Throwable {
+        // Hidden classes must be in the same package of lookup class
+        TypeDeclaration declaration = ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName(HiddenClassTest.class.getPackage().getName() + ".HiddenGenerated")
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC)
+                        .returnType(String.class)
+                        .name("test")
+                        .body(Instructions.fromPart(Factories.returnValue(String.class, Literals.STRING("hidden"))))
+                        .build())
+                .build();
+
+        HiddenClassDefiner definer = new HiddenClassDefiner(MethodHandles.lookup());
+
+        Class<?> first = definer.define(new BytecodeGenerator().process(declaration));
+        Class<?> second = definer.define(new BytecodeGenerator().process(declaration));
+
+        Assert.assertTrue(first.isHidden());
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("hidden", first.getDeclaredMethod("test").invoke(first.getConstructor().newInstance()));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.bytecode.util.JarEntryMethod;
+import com.koresframework.kores.bytecode.util.JarSink;
+import com.koresframework.kores.test.SwitchTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class JarSinkTest {
+
+    @Test
+    public void jarSinkTest() throws Exception {
+        TypeDeclaration $ = SwitchTest_.$();
+        List<BytecodeClass> classes = new BytecodeGenerator().process($);
+        Path dir = Files.createTempDirectory("kores-jar");
+        Path jar = dir.resolve("out.jar");
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, $.getType());
+
+        try (JarSink sink = new JarSink(jar,
+                name -> name.endsWith("MF") ? JarEntryMethod.STORED : JarEntryMethod.DEFLATED,
+                9, null, true, JarSink.DEFAULT_TIMESTAMP, manifest)) {
+            new BytecodeGenerator().process($, sink);
+        }
+
+        try (JarFile file = new JarFile(jar.toFile())) {
+            Assert.assertEquals($.getType(), file.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS));
+            Assert.assertEquals(ZipEntry.STORED, file.getJarEntry(JarFile.MANIFEST_NAME).getMethod());
+
+            List<String> names = new ArrayList<>();
+
+            for (JarEntry entry : Collections.list(file.entries())) {
+                if (entry.getName().endsWith(".class"))
+                    names.add(entry.getName());
+            }
+
+            List<String> sorted = new ArrayList<>(names);
+            Collections.sort(sorted);
+
+            Assert.assertEquals(classes.size(), names.size());
+            Assert.assertEquals(sorted, names);
+
+            for (BytecodeClass bytecodeClass : classes) {
+                JarEntry entry = file.getJarEntry(JarSink.entryName(bytecodeClass));
+                Assert.assertNotNull(entry);
+                Assert.assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+                Assert.assertArrayEquals(bytecodeClass.getBytecode(), file.getInputStream(entry).readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    public void parallelDeterministicTest() throws Exception {
+        TypeDeclaration $ = SwitchTest_.$();
+        Path dir = Files.createTempDirectory("kores-jar");
+        Path first = dir.resolve("first.jar");
+        Path second = dir.resolve("second.jar");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            try (JarSink sink = new JarSink(first)) {
+                new BytecodeGenerator().process($, sink);
+            }
+
+            try (JarSink sink = new JarSink(second, name -> JarEntryMethod.DEFLATED, -1, executor)) {
+                new BytecodeGenerator().process($, sink);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+
+        try (JarFile file = new JarFile(second.toFile())) {
+            Assert.assertEquals(LocalDateTime.of(1980, 1, 1, 0, 0, 0),
+                    file.entries().nextElement().getTimeLocal());
+        }
+    }
+
+    @Test
+    public void forcedZip64Test() throws Exception {
+        TypeDeclaration $ = SwitchTest_.$();
+        List<BytecodeClass> classes = new BytecodeGenerator().process($);
+        Path jar = Files.createTempDirectory("kores-jar").resolve("zip64.jar");
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        try (JarSink sink = new JarSink(jar, name -> JarEntryMethod.DEFLATED, -1, null, false,
+                JarSink.DEFAULT_TIMESTAMP, manifest, true)) {
+            new BytecodeGenerator().process($, sink);
+        }
+
+        // Central directory, with sizes and offsets in ZIP64 extra fields
+        try (JarFile file = new JarFile(jar.toFile())) {
+            Assert.assertNotNull(file.getManifest());
+
+            for (BytecodeClass bytecodeClass : classes) {
+                JarEntry entry = file.getJarEntry(JarSink.entryName(bytecodeClass));
+                Assert.assertEquals(bytecodeClass.getBytecode().length, entry.getSize());
+                Assert.assertArrayEquals(bytecodeClass.getBytecode(), file.getInputStream(entry).readAllBytes());
+            }
+        }
+
+        // Local headers, with sizes in ZIP64 extra fields
+        try (JarInputStream in = new JarInputStream(Files.newInputStream(jar))) {
+            Assert.assertNotNull(in.getManifest());
+
+            int count = 0;
+
+            for (JarEntry entry = in.getNextJarEntry(); entry != null; entry = in.getNextJarEntry()) {
+                in.readAllBytes();
+                ++count;
+            }
+
+            Assert.assertEquals(classes.size(), count);
+        }
+    }
+
+    @Test
+    public void zip64EntryCountTest() throws Exception {
+        Path jar = Files.createTempDirectory("kores-jar").resolve("entries.jar");
+        int entries = 0xFFFF + 16;
+
+        try (JarSink sink = new JarSink(jar, name -> JarEntryMethod.STORED)) {
+            for (int i = 0; i < entries; ++i)
+                sink.add("entries/" + i, new byte[]{(byte) i});
+        }
+
+        try (ZipFile file = new ZipFile(jar.toFile())) {
+            Assert.assertEquals(entries, file.size());
+
+            ZipEntry last = file.getEntry("entries/" + (entries - 1));
+            Assert.assertArrayEquals(new byte[]{(byte) (entries - 1)}, file.getInputStream(last).readAllBytes());
+        }
+    }
+
+    @Test
+    public void manifestFailureTest() throws Exception {
+        Path jar = Files.createTempDirectory("kores-jar").resolve("failure.jar");
+
+        try {
+            new JarSink(jar, name -> {
+                throw new IllegalStateException("Method failure");
+            }, -1, null, false, JarSink.DEFAULT_TIMESTAMP, new Manifest());
+            Assert.fail("Sink must fail");
+        } catch (IllegalStateException ignored) {
+        }
+
+        // File is not held open by the failed sink
+        Files.delete(jar);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.classloader.LazyCodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.InnerClassTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+public class LazyClassLoaderTest {
+
+    private static final String OUTER = "test.InnerClass";
+    private static final String INNER = "test.InnerClass$Inner";
+
+    @Test
+    public void lazyClassLoaderTest() throws Throwable {
+        List<BytecodeClass> classes = new BytecodeGenerator().process(InnerClassTest_.$());
+
+        TrackingLoader loader = new TrackingLoader(this.getClass().getClassLoader());
+        loader.register(classes);
+
+        Class<?> define = loader.loadClass(OUTER);
+
+        Assert.assertSame(loader, define.getClassLoader());
+        Assert.assertTrue(loader.isRegistered(INNER));
+        Assert.assertFalse("Inner classes must only be defined when used", loader.isDefined(INNER));
+
+        try (InputStream stream = loader.getResourceAsStream(INNER.replace('.', '/') + ".class")) {
+            Assert.assertNotNull(stream);
+            Assert.assertArrayEquals(bytecodeOf(classes, INNER), stream.readAllBytes());
+        }
+
+        Assert.assertFalse("Reading resources must not define classes", loader.isDefined(INNER));
+
+        // Constructor of the outer class creates an instance of the inner class
+        define.getConstructor().newInstance();
+
+        Assert.assertTrue(loader.isDefined(INNER));
+        Assert.assertSame(loader, loader.loadClass(INNER).getClassLoader());
+        Assert.assertSame(define, loader.loadClass(OUTER));
+    }
+
+    private static byte[] bytecodeOf(List<BytecodeClass> classes, String name) {
+        for (BytecodeClass bytecodeClass : classes) {
+            if (((TypeDeclaration) bytecodeClass.getDeclaration()).getType().equals(name))
+                return bytecodeClass.getBytecode();
+        }
+
+        throw new AssertionError("Class '" + name + "' was not generated");
+    }
+
+    static final class TrackingLoader extends LazyCodeClassLoader {
+        TrackingLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        boolean isDefined(String name) {
+            return this.findLoadedClass(name) != null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instruction;
+import com.koresframework.kores.MutableInstructions;
+import com.koresframework.kores.Types;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.FieldDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.factory.VariableFactory;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.operator.Operators;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MethodSplitterTest {
+
+    private static final int STATEMENTS = 16000;
+
+    @Test
+    public void largeMethodTest() throws Throwable {
+        Class<?> define = define(new BytecodeGenerator().process(sumDeclaration("com.LargeMethod", STATEMENTS)).get(0));
+
+        Assert.assertEquals(expectedSum(STATEMENTS), define.getDeclaredMethod("test").invoke(null));
+        Assert.assertTrue(helpers(define, "test$split$") > 0);
+    }
+
+    @Test
+    public void staticInitializerTest() throws Throwable {
+        List<Instruction> values = new ArrayList<>();
+
+        for (int i = 0; i < STATEMENTS; i++)
+            values.add(Literals.INT(i * 3));
+
+        ClassDeclaration declaration = ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.LargeTable")
+                .fields(FieldDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC, KoresModifier.FINAL)
+                        .type(int[].class)
+                        .name("TABLE")
+                        .value(Factories.createArray(
+                                int[].class,
+                                Collections.singletonList(Literals.INT(STATEMENTS)),
+                                values
+                        ))
+                        .build())
+                .build();
+
+        Class<?> define = define(new BytecodeGenerator().process(declaration).get(0));
+        int[] table = (int[]) define.getField("TABLE").get(null);
+
+        Assert.assertEquals(STATEMENTS, table.length);
+        Assert.assertEquals(3 * (STATEMENTS - 1), table[STATEMENTS - 1]);
+        Assert.assertTrue(helpers(define, "clinit$split$") > 0);
+    }
+
+    @Test
+    public void unfusedPipelineTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.FUSED_PIPELINE, false);
+
+        Class<?> define = define(generator.process(sumDeclaration("com.UnfusedLargeMethod", STATEMENTS)).get(0));
+
+        Assert.assertEquals(expectedSum(STATEMENTS), define.getDeclaredMethod("test").invoke(null));
+        Assert.assertTrue(helpers(define, "test$split$") > 0);
+    }
+
+    @Test
+    public void thresholdTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.METHOD_SPLIT_THRESHOLD, 256);
+
+        Class<?> define = define(generator.process(sumDeclaration("com.SplitMethod", 200)).get(0));
+
+        Assert.assertEquals(expectedSum(200), define.getDeclaredMethod("test").invoke(null));
+        Assert.assertTrue(helpers(define, "test$split$") > 0);
+
+        generator.getOptions().set(BytecodeOptions.SPLIT_LARGE_METHODS, false);
+        define = define(generator.process(sumDeclaration("com.SplitMethod", 200)).get(0));
+
+        Assert.assertEquals(expectedSum(200), define.getDeclaredMethod("test").invoke(null));
+        Assert.assertEquals(0, helpers(define, "test$split$"));
+    }
+
+    private static int value(int i) {
+        return 200 + i % 1000;
+    }
+
+    private static int expectedSum(int statements) {
+        int sum = 0;
+
+        for (int i = 0; i < statements; i++)
+            sum += value(i);
+
+        return sum;
+    }
+
+    private static ClassDeclaration sumDeclaration(String name, int statements) {
+        MutableInstructions body = MutableInstructions.create();
+
+        body.add(VariableFactory.variable(Types.INT, "sum", Literals.INT(0)));
+
+        for (int i = 0; i < statements; i++)
+            body.add(Factories.operateAndAssign(Types.INT, "sum", Operators.ADD, Literals.INT(value(i))));
+
+        body.add(Factories.returnValue(Types.INT, Factories.accessVariable(Types.INT, "sum")));
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName(name)
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .name("test")
+                        .returnType(Types.INT)
+                        .body(body)
+                        .build())
+                .build();
+    }
+
+    private Class<?> define(BytecodeClass bytecodeClass) {
+        return bytecodeClass.defineWith(new CodeClassLoader(this.getClass().getClassLoader()));
+    }
+
+    private static long helpers(Class<?> type, String name) {
+        return Arrays.stream(type.getDeclaredMethods())
+                .filter(it -> it.getName().contains(name))
+                .filter(Method::isSynthetic)
+                .filter(it -> Modifier.isStatic(it.getModifiers()) && Modifier.isPrivate(it.getModifiers()))
+                .count();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.classloader.OffHeapBytecodeStore;
+import com.koresframework.kores.bytecode.classloader.OffHeapCodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.SwitchTest_;
+import com.koresframework.kores.test.TryTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OffHeapStoreTest {
+
+    @Test
+    public void offHeapStoreTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        List<BytecodeClass> classes = new ArrayList<>();
+
+        classes.addAll(generator.process(SwitchTest_.$()));
+        classes.addAll(generator.process(TryTest_.$()));
+        classes.addAll(generator.process(InnerClassTest_.$()));
+
+        long size = classes.stream().mapToLong(BytecodeClass::getSize).sum();
+        int min = classes.stream().mapToInt(BytecodeClass::getSize).min().getAsInt();
+        int max = classes.stream().mapToInt(BytecodeClass::getSize).max().getAsInt();
+
+        // Larger classes get their own chunks, smaller ones share chunks
+        OffHeapBytecodeStore store = new OffHeapBytecodeStore((min + max) / 2);
+
+        store.store(classes);
+
+        Assert.assertEquals(classes.size(), store.getSize());
+        Assert.assertEquals(size, store.getUsedBytes());
+        Assert.assertTrue(store.getCapacity() >= size);
+
+        for (BytecodeClass bytecodeClass : classes) {
+            String name = ((TypeDeclaration) bytecodeClass.getDeclaration()).getType();
+            ByteBuffer buffer = store.buffer(name);
+
+            Assert.assertTrue(store.contains(name));
+            Assert.assertNotNull(buffer);
+            Assert.assertTrue(buffer.isDirect());
+            Assert.assertTrue(buffer.isReadOnly());
+            Assert.assertEquals(ByteBuffer.wrap(bytecodeClass.getBytecode()), buffer);
+            Assert.assertArrayEquals(bytecodeClass.getBytecode(), store.bytecodeClass(name).getBytecode());
+            Assert.assertTrue("Stored classes must not be copied to the heap", store.bytecodeClass(name).asByteBuffer().isDirect());
+        }
+
+        try {
+            store.store(classes.get(0));
+            Assert.fail("Duplicated class stored");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        OffHeapCodeClassLoader loader = store.classLoader(this.getClass().getClassLoader());
+
+        try (InputStream stream = loader.getResourceAsStream("test/InnerClass$Inner.class")) {
+            Assert.assertNotNull(stream);
+            Assert.assertArrayEquals(store.bytecodeClass("test.InnerClass$Inner").getBytecode(), stream.readAllBytes());
+        }
+
+        // Inner classes, switch mappings and classes used by constructors are defined from the store
+        Class<?> inner = loader.loadClass(InnerClassTest_.$().getType());
+        Assert.assertSame(loader, inner.getClassLoader());
+        inner.getConstructor().newInstance();
+        Assert.assertSame(loader, loader.loadClass("test.InnerClass$Inner").getClassLoader());
+
+        loader.loadClass(TryTest_.$().getType()).getConstructor().newInstance();
+
+        loader.loadClass(SwitchTest_.$().getType())
+                .getDeclaredConstructor(int.class, int.class, SwitchTest_.TestEnum.class, String.class, Object.class)
+                .newInstance(3, 10, SwitchTest_.TestEnum.B, "AHEAD", new SwitchTest.MyObj());
+
+        store.close();
+
+        Assert.assertNull(store.buffer("test.InnerClass$Inner"));
+    }
+}
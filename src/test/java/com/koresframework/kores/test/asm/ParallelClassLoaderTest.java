@@ -0,0 +1,142 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.cache.CacheStats;
+import com.koresframework.kores.bytecode.classloader.CachedCodeClassLoader;
+import com.koresframework.kores.bytecode.classloader.ClassCacheMode;
+import com.koresframework.kores.bytecode.classloader.LazyCodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.test.InnerClassTest_;
+import com.koresframework.kores.test.SwitchTest_;
+import com.koresframework.kores.test.TryTest_;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelClassLoaderTest {
+
+    @Test
+    public void parallelDefineTest() throws Throwable {
+        List<TypeDeclaration> declarations = Arrays.asList(SwitchTest_.$(), TryTest_.$(), InnerClassTest_.$());
+
+        List<List<BytecodeClass>> classes = new BytecodeGenerator().processAll(declarations);
+        CachedCodeClassLoader loader = new CachedCodeClassLoader(this.getClass().getClassLoader());
+
+        Assert.assertTrue(loader.isRegisteredAsParallelCapable());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int count = 0;
+
+        try {
+            List<Future<Class<?>>> defined = new ArrayList<>();
+
+            // Each declaration produces more than one class (inner classes, switch mappings and synthetic types)
+            for (List<BytecodeClass> bytecodeClasses : classes) {
+                count += bytecodeClasses.size();
+                defined.add(executor.submit(() -> loader.define(bytecodeClasses)));
+            }
+
+            for (int i = 0; i < defined.size(); ++i) {
+                Class<?> define = defined.get(i).get();
+                String name = ((TypeDeclaration) classes.get(i).get(0).getDeclaration()).getType();
+
+                Assert.assertSame(define, loader.getCachedClass(name));
+                Assert.assertSame(define, loader.loadClass(name));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(count, loader.getCache().size());
+    }
+
+    @Test
+    public void parallelLoadTest() throws Throwable {
+        LazyCodeClassLoader loader = new LazyCodeClassLoader(this.getClass().getClassLoader());
+        loader.register(new BytecodeGenerator().process(InnerClassTest_.$()));
+
+        Assert.assertTrue(loader.isRegisteredAsParallelCapable());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<Class<?>>> loaded = new ArrayList<>();
+
+            // Every thread loads the same classes, the outer constructor also loads the inner class
+            for (int i = 0; i < 32; ++i) {
+                loaded.add(executor.submit(() -> {
+                    start.await();
+
+                    Class<?> outer = loader.loadClass("test.InnerClass");
+                    outer.getConstructor().newInstance();
+                    loader.loadClass("test.InnerClass$Inner");
+
+                    return outer;
+                }));
+            }
+
+            start.countDown();
+
+            Class<?> expected = loaded.get(0).get();
+
+            for (Future<Class<?>> future : loaded) {
+                Assert.assertSame(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void boundedCacheTest() {
+        CachedCodeClassLoader loader = new CachedCodeClassLoader(getClass().getClassLoader(), ClassCacheMode.NAME, 2);
+        BytecodeGenerator generator = new BytecodeGenerator();
+
+        for (int i = 0; i < 3; ++i) {
+            loader.define(generator.process(ParallelGenerationTest.declaration(100 + i)));
+        }
+
+        Assert.assertNull(loader.getCachedClass("com.parallel.Generated100"));
+        Assert.assertNotNull(loader.getCachedClass("com.parallel.Generated102"));
+        // Declarations are not retained
+        Assert.assertTrue(loader.getCache().isEmpty());
+        Assert.assertEquals(new CacheStats(1, 1, 1, 2), loader.getStats());
+    }
+}
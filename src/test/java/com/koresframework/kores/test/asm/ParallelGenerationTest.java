@@ -0,0 +1,96 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeDeclaration;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.literal.Literals;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelGenerationTest {
+
+    static TypeDeclaration declaration(int i) {
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.parallel.Generated" + i)
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC)
+                        .returnType(String.class)
+                        .name("test")
+                        .body(Instructions.fromPart(Factories.returnValue(String.class, Literals.STRING("value" + i))))
+                        .build())
+                .build();
+    }
+
+    @Test
+    public void parallelGenerationTest() throws Throwable {
+        List<TypeDeclaration> declarations = new ArrayList<>();
+
+        for (int i = 0; i < 64; ++i) {
+            declarations.add(declaration(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<List<BytecodeClass>> results;
+
+        try {
+            results = new BytecodeGenerator().processAll(declarations, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(declarations.size(), results.size());
+
+        CodeClassLoader codeClassLoader = new CodeClassLoader();
+
+        for (int i = 0; i < results.size(); ++i) {
+            List<BytecodeClass> result = results.get(i);
+
+            Assert.assertEquals(1, result.size());
+            Assert.assertEquals("com.parallel.Generated" + i, ((TypeDeclaration) result.get(0).getDeclaration()).getType());
+
+            Class<?> define = codeClassLoader.define(result);
+
+            Assert.assertEquals("value" + i, define.getDeclaredMethod("test").invoke(define.newInstance()));
+        }
+    }
+}
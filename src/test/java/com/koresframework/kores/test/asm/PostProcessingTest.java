@@ -0,0 +1,269 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.bytecode.post.ChangeTrackingMethodProcessor;
+import com.koresframework.kores.bytecode.post.DeadCodeRemover;
+import com.koresframework.kores.bytecode.post.GotoOptimizer;
+import com.koresframework.kores.bytecode.post.LocalSlotReuser;
+import com.koresframework.kores.bytecode.post.MethodContext;
+import com.koresframework.kores.bytecode.post.MethodProcessor;
+import com.koresframework.kores.bytecode.post.Processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.util.CheckClassAdapter;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PostProcessingTest {
+
+    @Test
+    public void fixpointTest() {
+        AtomicInteger calls = new AtomicInteger();
+        MethodProcessor counter = new ChangeTrackingMethodProcessor() {
+            @Override
+            public boolean process(MethodContext context) {
+                calls.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public MethodNode process(String owner, MethodNode methodNode) {
+                this.process(new MethodContext(owner, methodNode));
+                return methodNode;
+            }
+        };
+
+        Processor processor = new Processor(Opcodes.ASM6, Arrays.asList(DeadCodeRemover.INSTANCE, GotoOptimizer.INSTANCE, counter), 10);
+
+        processor.process(deadCodeClass(1));
+
+        // Pass 1 removes dead code, pass 2 reaches the fixpoint
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void parallelTest() {
+        byte[] bytes = deadCodeClass(256);
+        List<MethodProcessor> processors = Arrays.asList(DeadCodeRemover.INSTANCE, GotoOptimizer.INSTANCE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            byte[] sequential = new Processor(Opcodes.ASM6, processors, 1).process(bytes);
+            byte[] parallel = new Processor(Opcodes.ASM6, processors, 1, null, executor, 0).process(bytes);
+
+            Assert.assertArrayEquals(sequential, parallel);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void localSlotReuseTest() throws Exception {
+        MethodNode method = slotsMethod(false);
+
+        Assert.assertTrue(LocalSlotReuser.INSTANCE.process(new MethodContext("com/post/Slots", method)));
+        new Analyzer<>(new BasicVerifier()).analyze("com/post/Slots", method);
+
+        // long at 1-2 reuses slot of int at 0 after its last use, and int at 3 reuses slot of long
+        Assert.assertEquals(2, method.maxLocals);
+        Assert.assertArrayEquals(new int[]{0, 0, 0, 0, 0, 0, 0, 0}, vars(method));
+    }
+
+    @Test
+    public void localSlotReuseTableTest() throws Exception {
+        MethodNode method = slotsMethod(true);
+
+        // Named variables share slots too, their entries are shrunk to their live ranges
+        Assert.assertTrue(LocalSlotReuser.INSTANCE.process(new MethodContext("com/post/Slots", method)));
+        new Analyzer<>(new BasicVerifier()).analyze("com/post/Slots", method);
+
+        Assert.assertEquals(2, method.maxLocals);
+        Assert.assertArrayEquals(new int[]{0, 0, 0, 0, 0, 0, 0, 0}, vars(method));
+        Assert.assertEquals(3, method.localVariables.size());
+
+        for (int i = 0; i < method.localVariables.size(); i++) {
+            LocalVariableNode variable = method.localVariables.get(i);
+
+            Assert.assertEquals(0, variable.index);
+            Assert.assertTrue(method.instructions.indexOf(variable.start) < method.instructions.indexOf(variable.end));
+
+            if (i > 0)
+                Assert.assertTrue(method.instructions.indexOf(method.localVariables.get(i - 1).end)
+                        <= method.instructions.indexOf(variable.start));
+        }
+    }
+
+    @Test
+    public void localSlotReuseTypeChangeTest() {
+        ClassNode classNode = new ClassNode(Opcodes.ASM9);
+        classNode.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "com/post/TypeChange", null, "java/lang/Object", null);
+
+        MethodNode method = typeChangeMethod();
+        classNode.methods.add(method);
+
+        Assert.assertTrue(LocalSlotReuser.INSTANCE.process(new MethodContext("com/post/TypeChange", method)));
+
+        // int at 1 is dead at the merge, reference at 2 reuses its slot after the merge
+        Assert.assertEquals(2, method.maxLocals);
+        Assert.assertArrayEquals(new int[]{0, 1, 1, 1, 1, 1}, vars(method));
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        classNode.accept(cw);
+
+        StringWriter errors = new StringWriter();
+        CheckClassAdapter.verify(new ClassReader(cw.toByteArray()), this.getClass().getClassLoader(), false,
+                new PrintWriter(errors));
+
+        Assert.assertEquals("", errors.toString());
+    }
+
+    private static MethodNode typeChangeMethod() {
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "(Z)Ljava/lang/Object;", null, null);
+        LabelNode start = new LabelNode();
+        LabelNode orElse = new LabelNode();
+        LabelNode merge = new LabelNode();
+        LabelNode end = new LabelNode();
+
+        method.instructions.add(start);
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        method.instructions.add(new JumpInsnNode(Opcodes.IFEQ, orElse));
+        method.instructions.add(new IntInsnNode(Opcodes.BIPUSH, 10));
+        method.instructions.add(new VarInsnNode(Opcodes.ISTORE, 1));
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 1));
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 1));
+        method.instructions.add(new InsnNode(Opcodes.IADD));
+        method.instructions.add(new JumpInsnNode(Opcodes.GOTO, merge));
+        method.instructions.add(orElse);
+        method.instructions.add(new IntInsnNode(Opcodes.BIPUSH, 7));
+        method.instructions.add(merge);
+        method.instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf",
+                "(I)Ljava/lang/Integer;", false));
+        method.instructions.add(new VarInsnNode(Opcodes.ASTORE, 2));
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 2));
+        method.instructions.add(new InsnNode(Opcodes.ARETURN));
+        method.instructions.add(end);
+        method.localVariables = new ArrayList<>(Arrays.asList(
+                new LocalVariableNode("bool", "Z", null, start, end, 0),
+                new LocalVariableNode("i", "I", null, start, end, 1),
+                new LocalVariableNode("o", "Ljava/lang/Object;", null, start, end, 2)
+        ));
+        method.maxLocals = 3;
+        method.maxStack = 2;
+
+        return method;
+    }
+
+    private static MethodNode slotsMethod(boolean table) {
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "()I", null, null);
+        LabelNode start = new LabelNode();
+        LabelNode end = new LabelNode();
+
+        method.instructions.add(start);
+        method.instructions.add(new InsnNode(Opcodes.ICONST_1));
+        method.instructions.add(new VarInsnNode(Opcodes.ISTORE, 0));
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        method.instructions.add(new InsnNode(Opcodes.I2L));
+        method.instructions.add(new VarInsnNode(Opcodes.LSTORE, 1));
+        method.instructions.add(new VarInsnNode(Opcodes.LLOAD, 1));
+        method.instructions.add(new VarInsnNode(Opcodes.LLOAD, 1));
+        method.instructions.add(new InsnNode(Opcodes.LADD));
+        method.instructions.add(new InsnNode(Opcodes.L2I));
+        method.instructions.add(new VarInsnNode(Opcodes.ISTORE, 3));
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 3));
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 3));
+        method.instructions.add(new InsnNode(Opcodes.IADD));
+        method.instructions.add(new InsnNode(Opcodes.IRETURN));
+        method.instructions.add(end);
+        method.maxLocals = 4;
+        method.maxStack = 4;
+
+        if (table) {
+            method.localVariables = Arrays.asList(
+                    new LocalVariableNode("a", "I", null, start, end, 0),
+                    new LocalVariableNode("b", "J", null, start, end, 1),
+                    new LocalVariableNode("c", "I", null, start, end, 3)
+            );
+        }
+
+        return method;
+    }
+
+    private static int[] vars(MethodNode method) {
+        return Arrays.stream(method.instructions.toArray())
+                .filter(it -> it instanceof VarInsnNode)
+                .mapToInt(it -> ((VarInsnNode) it).var)
+                .toArray();
+    }
+
+    private static byte[] deadCodeClass(int methods) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "com/post/Dead", null, "java/lang/Object", null);
+
+        for (int i = 0; i < methods; ++i) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test" + i, "()I", null, null);
+            Label end = new Label();
+            mv.visitCode();
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitInsn(Opcodes.POP);
+            mv.visitLabel(end);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
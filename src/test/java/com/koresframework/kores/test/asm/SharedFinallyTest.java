@@ -0,0 +1,322 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.Instruction;
+import com.koresframework.kores.Instructions;
+import com.koresframework.kores.Types;
+import com.koresframework.kores.base.ClassDeclaration;
+import com.koresframework.kores.base.KoresModifier;
+import com.koresframework.kores.base.MethodDeclaration;
+import com.koresframework.kores.base.TypeSpec;
+import com.koresframework.kores.bytecode.BytecodeClass;
+import com.koresframework.kores.bytecode.BytecodeOptions;
+import com.koresframework.kores.bytecode.classloader.CodeClassLoader;
+import com.koresframework.kores.bytecode.processor.BytecodeGenerator;
+import com.koresframework.kores.factory.Factories;
+import com.koresframework.kores.factory.InvocationFactory;
+import com.koresframework.kores.factory.VariableFactory;
+import com.koresframework.kores.literal.Literals;
+import com.koresframework.kores.operator.Operators;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+public class SharedFinallyTest {
+
+    private static int finallyCalls = 0;
+    private static final StringBuilder trace = new StringBuilder();
+
+    public static void called() {
+        finallyCalls++;
+    }
+
+    public static void mark(int value) {
+        trace.append(value).append(';');
+    }
+
+    @Test
+    public void sharedFinallyTest() throws Throwable {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.getOptions().set(BytecodeOptions.FINALLY_INLINE_THRESHOLD, 0);
+
+        BytecodeClass bytecodeClass = generator.process(declaration()).get(0);
+
+        Assert.assertTrue(hasTableSwitch(bytecodeClass));
+
+        Class<?> define = bytecodeClass.defineWith(new CodeClassLoader(this.getClass().getClassLoader()));
+        Method test = define.getDeclaredMethod("test", Integer.TYPE);
+
+        finallyCalls = 0;
+        Assert.assertEquals(10, test.invoke(null, 0));
+        Assert.assertEquals(20, test.invoke(null, 1));
+        Assert.assertEquals(30, test.invoke(null, 2));
+
+        try {
+            test.invoke(null, 3);
+            Assert.fail("Exception must be rethrown after finally");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+
+        Assert.assertEquals(4, finallyCalls);
+    }
+
+    @Test
+    public void inlinedFinallyTest() throws Throwable {
+        BytecodeClass bytecodeClass = new BytecodeGenerator().process(declaration()).get(0);
+
+        Assert.assertFalse(hasTableSwitch(bytecodeClass));
+
+        Class<?> define = bytecodeClass.defineWith(new CodeClassLoader(this.getClass().getClassLoader()));
+        Method test = define.getDeclaredMethod("test", Integer.TYPE);
+
+        finallyCalls = 0;
+        Assert.assertEquals(10, test.invoke(null, 0));
+        Assert.assertEquals(20, test.invoke(null, 1));
+        Assert.assertEquals(30, test.invoke(null, 2));
+        Assert.assertEquals(3, finallyCalls);
+    }
+
+    @Test
+    public void nestedSharedFinallyTest() throws Throwable {
+        nestedTest(true);
+    }
+
+    @Test
+    public void nestedInlinedFinallyTest() throws Throwable {
+        nestedTest(false);
+    }
+
+    @Test
+    public void loopSharedFinallyTest() throws Throwable {
+        loopTest(true);
+    }
+
+    @Test
+    public void loopInlinedFinallyTest() throws Throwable {
+        loopTest(false);
+    }
+
+    private void nestedTest(boolean shared) throws Throwable {
+        Method nested = defineNested(shared).getDeclaredMethod("nested", Integer.TYPE);
+
+        Assert.assertEquals(10, invokeTraced(nested, 0, "1;100;2;"));
+        Assert.assertEquals(20, invokeTraced(nested, 2, "1;102;3;2;"));
+
+        try {
+            invokeTraced(nested, 1, null);
+            Assert.fail("Exception must be rethrown after both finally blocks");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertEquals("1;101;2;", trace.toString());
+        }
+    }
+
+    private void loopTest(boolean shared) throws Throwable {
+        Method loop = defineNested(shared).getDeclaredMethod("loop", Integer.TYPE);
+
+        Assert.assertEquals(2, invokeTraced(loop, 5, "0;-1;1;-1;2;-1;3;-1;"));
+        Assert.assertEquals(2, invokeTraced(loop, 3, "0;-1;1;-1;2;-1;"));
+    }
+
+    private Class<?> defineNested(boolean shared) {
+        BytecodeGenerator generator = new BytecodeGenerator();
+
+        if (shared)
+            generator.getOptions().set(BytecodeOptions.FINALLY_INLINE_THRESHOLD, 0);
+
+        BytecodeClass bytecodeClass = generator.process(nestedDeclaration()).get(0);
+
+        return bytecodeClass.defineWith(new CodeClassLoader(this.getClass().getClassLoader()));
+    }
+
+    private static Object invokeTraced(Method method, int arg, String expectedTrace) throws Throwable {
+        trace.setLength(0);
+        Object result = method.invoke(null, arg);
+
+        Assert.assertEquals(expectedTrace, trace.toString());
+        return result;
+    }
+
+    private static boolean hasTableSwitch(BytecodeClass bytecodeClass) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytecodeClass.getBytecode()).accept(node, 0);
+
+        for (MethodNode method : node.methods) {
+            if (method.name.equals("test")) {
+                for (AbstractInsnNode insn : method.instructions) {
+                    if (insn.getOpcode() == Opcodes.TABLESWITCH)
+                        return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static Instruction ifA(int value, Instruction body) {
+        return ifEquals("a", value, body);
+    }
+
+    private static Instruction ifEquals(String name, int value, Instruction body) {
+        return Factories.ifStatement(
+                Factories.ifExprs(Factories.check(Factories.accessVariable(Integer.TYPE, name), Operators.EQUAL_TO, Literals.INT(value))),
+                Instructions.fromPart(body),
+                Instructions.empty()
+        );
+    }
+
+    private static Instruction mark(Instruction value) {
+        return InvocationFactory.invokeStatic(SharedFinallyTest.class,
+                "mark",
+                new TypeSpec(Types.VOID, Collections.singletonList(Types.INT)),
+                Collections.singletonList(value));
+    }
+
+    private static Instruction tryFinally(Instructions body, Instructions finallyBlock) {
+        return Factories.tryStatement(body, Collections.emptyList(), finallyBlock);
+    }
+
+    private static Instruction throwNew(Class<?> type) {
+        return Factories.throwException(InvocationFactory.invokeConstructor(type));
+    }
+
+    static ClassDeclaration declaration() {
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.SharedFinally")
+                .methods(MethodDeclaration.Builder.builder()
+                        .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                        .name("test")
+                        .returnType(Types.INT)
+                        .parameters(Factories.parameter(Integer.TYPE, "a"))
+                        .body(Instructions.fromVarArgs(
+                                Factories.tryStatement(
+                                        Instructions.fromVarArgs(
+                                                ifA(0, Factories.returnValue(Types.INT, Literals.INT(10))),
+                                                ifA(1, throwNew(IllegalStateException.class)),
+                                                ifA(3, throwNew(UnsupportedOperationException.class))
+                                        ),
+                                        Collections.singletonList(
+                                                Factories.catchStatement(
+                                                        IllegalStateException.class,
+                                                        VariableFactory.variable(IllegalStateException.class, "ex"),
+                                                        Instructions.fromPart(
+                                                                Factories.returnValue(Types.INT, Literals.INT(20))
+                                                        )
+                                                )
+                                        ),
+                                        Instructions.fromPart(
+                                                InvocationFactory.invokeStatic(SharedFinallyTest.class,
+                                                        "called",
+                                                        new TypeSpec(Types.VOID),
+                                                        Collections.emptyList())
+                                        )
+                                ),
+                                Factories.returnValue(Types.INT, Literals.INT(30))
+                        ))
+                        .build())
+                .build();
+    }
+
+    static ClassDeclaration nestedDeclaration() {
+        Instruction accessI = Factories.accessVariable(Types.INT, "i");
+
+        return ClassDeclaration.Builder.builder()
+                .modifiers(KoresModifier.PUBLIC)
+                .specifiedName("com.NestedFinally")
+                .methods(MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                                .name("nested")
+                                .returnType(Types.INT)
+                                .parameters(Factories.parameter(Integer.TYPE, "a"))
+                                .body(Instructions.fromVarArgs(
+                                        tryFinally(
+                                                Instructions.fromVarArgs(
+                                                        VariableFactory.variable(Types.INT, "o",
+                                                                Factories.operate(Factories.accessVariable(Types.INT, "a"),
+                                                                        Operators.ADD, Literals.INT(100))),
+                                                        tryFinally(
+                                                                Instructions.fromVarArgs(
+                                                                        ifA(0, Factories.returnValue(Types.INT, Literals.INT(10))),
+                                                                        ifA(1, throwNew(IllegalStateException.class))
+                                                                ),
+                                                                Instructions.fromVarArgs(
+                                                                        mark(Literals.INT(1)),
+                                                                        mark(Factories.accessVariable(Types.INT, "o"))
+                                                                )
+                                                        ),
+                                                        mark(Literals.INT(3))
+                                                ),
+                                                Instructions.fromPart(mark(Literals.INT(2)))
+                                        ),
+                                        Factories.returnValue(Types.INT, Literals.INT(20))
+                                ))
+                                .build(),
+                        MethodDeclaration.Builder.builder()
+                                .modifiers(KoresModifier.PUBLIC, KoresModifier.STATIC)
+                                .name("loop")
+                                .returnType(Types.INT)
+                                .parameters(Factories.parameter(Integer.TYPE, "a"))
+                                .body(Instructions.fromVarArgs(
+                                        VariableFactory.variable(Types.INT, "sum", Literals.INT(0)),
+                                        Factories.forStatement(VariableFactory.variable(Types.INT, "i", Literals.INT(0)),
+                                                Factories.ifExprs(Factories.check(accessI, Operators.LESS_THAN,
+                                                        Factories.accessVariable(Types.INT, "a"))),
+                                                Factories.operateAndAssign(Types.INT, "i", Operators.ADD, Literals.INT(1)),
+                                                Instructions.fromPart(
+                                                        tryFinally(
+                                                                Instructions.fromPart(
+                                                                        tryFinally(
+                                                                                Instructions.fromVarArgs(
+                                                                                        ifEquals("i", 1, Factories.continueFlow()),
+                                                                                        ifEquals("i", 3, Factories.breakFlow()),
+                                                                                        Factories.operateAndAssign(Types.INT, "sum", Operators.ADD, accessI)
+                                                                                ),
+                                                                                Instructions.fromPart(mark(accessI))
+                                                                        )
+                                                                ),
+                                                                Instructions.fromPart(mark(Literals.INT(-1)))
+                                                        )
+                                                )),
+                                        Factories.returnValue(Types.INT, Factories.accessVariable(Types.INT, "sum"))
+                                ))
+                                .build())
+                .build();
+    }
+}
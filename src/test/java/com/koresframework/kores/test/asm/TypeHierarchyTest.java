@@ -0,0 +1,68 @@
+/*
+ *      Kores-BytecodeWriter - Translates Kores Structure to JVM Bytecode <https://github.com/JonathanxD/CodeAPI-BytecodeWriter>
+ *
+ *         The MIT License (MIT)
+ *
+ *      Copyright (c) 2021 TheRealBuggy/JonathanxD (https://github.com/JonathanxD/) <jonathan.scripter@programmer.net>
+ *      Copyright (c) contributors
+ *
+ *
+ *      Permission is hereby granted, free of charge, to any person obtaining a copy
+ *      of this software and associated documentation files (the "Software"), to deal
+ *      in the Software without restriction, including without limitation the rights
+ *      to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *      copies of the Software, and to permit persons to whom the Software is
+ *      furnished to do so, subject to the following conditions:
+ *
+ *      The above copyright notice and this permission notice shall be included in
+ *      all copies or substantial portions of the Software.
+ *
+ *      THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *      IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *      FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *      AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *      LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *      OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *      THE SOFTWARE.
+ */
+package com.koresframework.kores.test.asm;
+
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchy;
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyInfo;
+import com.koresframework.kores.bytecode.util.asm.TypeHierarchyResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TypeHierarchyTest {
+
+    @Test
+    public void commonSuperClassTest() {
+        TypeHierarchyResolver generated = name -> {
+            switch (name) {
+                case "com/test/Base":
+                    return new TypeHierarchyInfo(name, "java/lang/Object", Collections.emptyList(), false);
+                case "com/test/A":
+                case "com/test/B":
+                    return new TypeHierarchyInfo(name, "com/test/Base", Collections.emptyList(), false);
+                default:
+                    return null;
+            }
+        };
+
+        TypeHierarchy hierarchy = new TypeHierarchy(Arrays.asList(generated, TypeHierarchyResolver.DEFAULT));
+
+        Assert.assertEquals("com/test/Base", hierarchy.commonSuperClass("com/test/A", "com/test/B"));
+        Assert.assertEquals("com/test/Base", hierarchy.commonSuperClass("com/test/Base", "com/test/B"));
+        Assert.assertEquals("java/lang/Object", hierarchy.commonSuperClass("com/test/A", "java/lang/String"));
+        Assert.assertEquals("java/lang/Number", hierarchy.commonSuperClass("java/lang/Integer", "java/lang/Long"));
+    }
+
+    @Test(expected = TypeNotPresentException.class)
+    public void unknownTypeTest() {
+        new TypeHierarchy(Collections.singletonList(name -> null)).commonSuperClass("com/test/A", "com/test/B");
+    }
+}